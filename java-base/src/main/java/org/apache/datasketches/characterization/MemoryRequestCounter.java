@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import org.apache.datasketches.memory.WritableMemory;
+
+/**
+ * The allocation strategies and the request counts behind CountingMemoryRequestServer, which only
+ * adapts this class to the MemoryRequestServer interface of the memory version in use.
+ *
+ * <p>A sketch grows by requesting a larger memory, moving its data from the current memory and
+ * then, depending on the library version, asking the server to close the current memory. The
+ * request count, the bytes requested, the capacity of the memories replaced and the time spent in
+ * the requests are recorded. Since the sketch moves its data after the request returns, the end time
+ * of the last request is kept so that the caller can measure the time up to the end of the update
+ * that caused it.</p>
+ *
+ * <p>A replaced memory is released at the next request, at requestClose() or at release(),
+ * whichever comes first, because not every library version calls requestClose(). Not thread-safe.</p>
+ */
+public abstract class MemoryRequestCounter implements AutoCloseable {
+
+  /**
+   * Where the memories come from.
+   */
+  public enum Strategy {
+    /** Heap memories of exactly the requested size, left to the garbage collector. */
+    HEAP,
+    /** Off-heap memories of exactly the requested size, freed when released. */
+    DIRECT,
+    /** Off-heap memories rounded up to a power of two and kept in free lists for reuse. */
+    POOLED
+  }
+
+  private final Strategy strategy;
+  private final IdentityHashMap<WritableMemory, DirectMemory> outstanding = new IdentityHashMap<>();
+  private final List<ArrayDeque<DirectMemory>> freeLists = new ArrayList<>(); //indexed by lg capacity
+  private WritableMemory current = null;
+  private WritableMemory replaced = null;
+  private long numRequests = 0;
+  private long requestedBytes = 0;
+  private long replacedBytes = 0;
+  private long requestTime_nS = 0;
+  private long lastRequestEnd_nS = 0;
+  private long poolHits = 0;
+  private boolean fromPool = false;
+
+  protected MemoryRequestCounter(final Strategy strategy) {
+    this.strategy = strategy;
+  }
+
+  /**
+   * Gets the initial memory of a sketch from the strategy. This is not counted as a request.
+   * @param capacityBytes the capacity in bytes
+   * @return the initial memory of a sketch
+   */
+  public WritableMemory allocate(final long capacityBytes) {
+    current = newMemory(capacityBytes);
+    return current;
+  }
+
+  /**
+   * Releases the memories of the sketch that was last served. The sketch must not be used afterwards.
+   */
+  public void release() {
+    free(replaced);
+    free(current);
+    replaced = null;
+    current = null;
+  }
+
+  /**
+   * Releases all memories, including those in the pool.
+   */
+  @Override
+  public void close() {
+    release();
+    for (final DirectMemory dm : outstanding.values()) { dm.close(); }
+    outstanding.clear();
+    for (final ArrayDeque<DirectMemory> freeList : freeLists) {
+      for (final DirectMemory dm : freeList) { dm.close(); }
+      freeList.clear();
+    }
+  }
+
+  /**
+   * Clears the counts.
+   */
+  public void resetCounts() {
+    numRequests = 0;
+    requestedBytes = 0;
+    replacedBytes = 0;
+    requestTime_nS = 0;
+    poolHits = 0;
+  }
+
+  public Strategy getStrategy() { return strategy; }
+
+  public long getNumRequests() { return numRequests; }
+
+  public long getRequestedBytes() { return requestedBytes; }
+
+  /**
+   * Gets the sum of the capacities of the memories replaced by requests, which bounds the bytes
+   * the sketches had to move to the new memories.
+   * @return the sum of the capacities of the replaced memories
+   */
+  public long getReplacedBytes() { return replacedBytes; }
+
+  public long getRequestTime_nS() { return requestTime_nS; }
+
+  public long getLastRequestEnd_nS() { return lastRequestEnd_nS; }
+
+  /**
+   * Gets the number of POOLED requests served from a free list.
+   * @return the number of POOLED requests served from a free list
+   */
+  public long getPoolHits() { return poolHits; }
+
+  /**
+   * Serves a request for a larger memory.
+   * @param currentMemory the memory being replaced
+   * @param capacityBytes the capacity of the new memory
+   * @return the new memory
+   */
+  protected final WritableMemory grow(final WritableMemory currentMemory, final long capacityBytes) {
+    final long startTime_nS = System.nanoTime();
+    free(replaced);
+    replaced = currentMemory;
+    current = newMemory(capacityBytes);
+    if (fromPool) { poolHits++; }
+    numRequests++;
+    requestedBytes += capacityBytes;
+    replacedBytes += currentMemory.getCapacity();
+    lastRequestEnd_nS = System.nanoTime();
+    requestTime_nS += lastRequestEnd_nS - startTime_nS;
+    return current;
+  }
+
+  /**
+   * Serves a request to close a replaced memory.
+   * @param memToClose the replaced memory
+   */
+  protected final void requestFree(final WritableMemory memToClose) {
+    if (memToClose == replaced) { replaced = null; }
+    free(memToClose);
+  }
+
+  private WritableMemory newMemory(final long capacityBytes) {
+    final DirectMemory dm;
+    switch (strategy) {
+      case HEAP: return WritableMemory.allocate((int) capacityBytes);
+      case DIRECT: {
+        dm = new DirectMemory(capacityBytes);
+        break;
+      }
+      default: { //POOLED
+        final int lgCapacity = 64 - Long.numberOfLeadingZeros(Math.max(capacityBytes, 2) - 1);
+        while (freeLists.size() <= lgCapacity) { freeLists.add(new ArrayDeque<>()); }
+        final DirectMemory pooled = freeLists.get(lgCapacity).poll();
+        fromPool = pooled != null;
+        dm = fromPool ? pooled : new DirectMemory(1L << lgCapacity);
+      }
+    }
+    final WritableMemory wmem = dm.getWritableMemory();
+    outstanding.put(wmem, dm);
+    return wmem;
+  }
+
+  //memories not handed out by this counter, or already freed, are ignored
+  private void free(final WritableMemory wmem) {
+    if (wmem == null) { return; }
+    final DirectMemory dm = outstanding.remove(wmem);
+    if (dm == null) { return; }
+    if (strategy == Strategy.POOLED) {
+      final int lgCapacity = Long.numberOfTrailingZeros(wmem.getCapacity());
+      freeLists.get(lgCapacity).push(dm);
+    } else {
+      dm.close();
+    }
+  }
+
+}
@@ -33,9 +33,19 @@ public final class Shuffle {
    * @return the given array, shuffled.
    */
   public static float[] shuffle(final float[] array) {
+    return shuffle(array, rand);
+  }
+
+  /**
+   * Shuffle the given input float array with the given Random, e.g., one per thread
+   * @param array input array
+   * @param rnd the source of randomness
+   * @return the given array, shuffled.
+   */
+  public static float[] shuffle(final float[] array, final Random rnd) {
     final int arrLen = array.length;
     for (int i = 0; i < arrLen; i++) {
-      final int r = rand.nextInt(i + 1);
+      final int r = rnd.nextInt(i + 1);
       swap(array, i, r);
     }
     return array;
@@ -93,9 +103,19 @@ public final class Shuffle {
    * @return the given array, shuffled.
    */
   public static int[] shuffle(final int[] array) {
+    return shuffle(array, rand);
+  }
+
+  /**
+   * Shuffle the given input int array with the given Random, e.g., one per thread
+   * @param array input array
+   * @param rnd the source of randomness
+   * @return the given array, shuffled.
+   */
+  public static int[] shuffle(final int[] array, final Random rnd) {
     final int arrLen = array.length;
     for (int i = 0; i < arrLen; i++) {
-      final int r = rand.nextInt(i + 1);
+      final int r = rnd.nextInt(i + 1);
       swap(array, i, r);
     }
     return array;
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.concurrent;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs the same task concurrently on a fixed set of worker threads, one call per thread per trial.
+ *
+ * <p>All workers are released together by a start barrier and the caller blocks on an end barrier
+ * until the last worker has finished. Between trials the workers are parked inside the barrier,
+ * so idle workers do not consume CPU. Each worker records its own start and stop time around the
+ * task, so the reported times exclude the coordination overhead of the barriers.</p>
+ */
+public class BarrierTestDriver {
+  private final int numThreads;
+  private final Thread[] workers;
+  private final long[] startTimes_nS;
+  private final long[] stopTimes_nS;
+  private final CyclicBarrier startGate;
+  private final CyclicBarrier endGate;
+  private volatile IntConsumer task;
+  private volatile boolean stopped = false;
+  private volatile Throwable failure = null;
+
+  /**
+   * Creates and starts the worker threads, which then wait for the first trial.
+   * @param numThreads the number of worker threads
+   */
+  public BarrierTestDriver(final int numThreads) {
+    if (numThreads < 1) { throw new IllegalArgumentException("numThreads must be > 0: " + numThreads); }
+    this.numThreads = numThreads;
+    workers = new Thread[numThreads];
+    startTimes_nS = new long[numThreads];
+    stopTimes_nS = new long[numThreads];
+    startGate = new CyclicBarrier(numThreads + 1);
+    endGate = new CyclicBarrier(numThreads + 1);
+    for (int i = 0; i < numThreads; i++) {
+      final int index = i;
+      workers[i] = new Thread(() -> work(index), "BarrierTestDriver-" + i);
+      workers[i].setDaemon(true);
+      workers[i].start();
+    }
+  }
+
+  /**
+   * Runs the given task once on every worker thread and waits for all of them to finish.
+   * @param task the task, which receives the index of the worker thread, 0 to numThreads - 1.
+   * @return the elapsed time in nanoseconds from the earliest worker start to the latest worker stop.
+   */
+  public long run(final IntConsumer task) {
+    if (stopped) { throw new IllegalStateException("Driver has been shut down."); }
+    this.task = task;
+    await(startGate);
+    await(endGate);
+    this.task = null;
+    if (failure != null) {
+      final Throwable t = failure;
+      failure = null;
+      throw new RuntimeException("Worker task failed", t);
+    }
+    long minStart = Long.MAX_VALUE;
+    long maxStop = Long.MIN_VALUE;
+    for (int i = 0; i < numThreads; i++) {
+      minStart = Math.min(minStart, startTimes_nS[i]);
+      maxStop = Math.max(maxStop, stopTimes_nS[i]);
+    }
+    return maxStop - minStart;
+  }
+
+  /**
+   * Gets the time in nanoseconds the given worker spent in the task during the last trial.
+   * @param threadIndex the index of the worker thread
+   * @return the time in nanoseconds the given worker spent in the task during the last trial.
+   */
+  public long getThreadTime_nS(final int threadIndex) {
+    return stopTimes_nS[threadIndex] - startTimes_nS[threadIndex];
+  }
+
+  /**
+   * Gets the number of worker threads
+   * @return the number of worker threads
+   */
+  public int getNumThreads() {
+    return numThreads;
+  }
+
+  /**
+   * Stops all worker threads. The driver cannot be used afterwards.
+   */
+  public void shutdown() {
+    if (stopped) { return; }
+    stopped = true;
+    await(startGate); //releases the workers, which see stopped and exit
+    for (int i = 0; i < numThreads; i++) {
+      try {
+        workers[i].join();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private void work(final int index) {
+    while (true) {
+      await(startGate);
+      if (stopped) { return; }
+      startTimes_nS[index] = System.nanoTime();
+      try {
+        task.accept(index);
+      } catch (final Throwable t) {
+        failure = t;
+      }
+      stopTimes_nS[index] = System.nanoTime();
+      await(endGate);
+    }
+  }
+
+  private static void await(final CyclicBarrier barrier) {
+    try {
+      barrier.await();
+    } catch (final InterruptedException | BrokenBarrierException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+}
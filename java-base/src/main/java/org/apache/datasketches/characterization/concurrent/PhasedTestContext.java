@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A replacement for ConcurrentTestContext and ConcurrentTestThread that does not busy-spin.
+ *
+ * <p>Between trials every worker is parked with LockSupport.park(). A trial unparks all workers,
+ * which then meet at the start gate of a Phaser shared with the caller. Writers perform their share
+ * of the operations, readers repeat their operation until the last writer has finished, and all
+ * of them meet the caller again at the end gate. Operation counts are accumulated in LongAdders
+ * and each worker records its own start and stop time, so the total time excludes the cost of
+ * waking the threads and of the gates.</p>
+ */
+public class PhasedTestContext {
+  private final List<PhasedTestThread> writers = new ArrayList<>();
+  private final List<PhasedTestThread> readers = new ArrayList<>();
+  private final Phaser phaser = new Phaser(1); //the caller is always registered
+  private final AtomicInteger writersRemaining = new AtomicInteger();
+  private final LongAdder writeOpsCounter = new LongAdder();
+  private final LongAdder readOpsCounter = new LongAdder();
+  private volatile int generation = 0;
+  private volatile boolean writersDone = false;
+  private volatile boolean stop = false;
+  private long opsPerWriter;
+  private long totalTimeNS;
+
+  /**
+   * Adds a writer thread, which performs the given operation its share of times per trial.
+   * @param op the write operation
+   */
+  public void addWriterThread(final Runnable op) {
+    writers.add(new PhasedTestThread(op, true, "PhasedWriter-" + writers.size()));
+  }
+
+  /**
+   * Adds a reader thread, which repeats the given operation until all writers are done.
+   * @param op the read operation
+   */
+  public void addReaderThread(final Runnable op) {
+    readers.add(new PhasedTestThread(op, false, "PhasedReader-" + readers.size()));
+  }
+
+  /**
+   * Start all threads. They park until the first trial.
+   */
+  public void startThreads() {
+    if (writers.isEmpty()) { throw new IllegalStateException("At least one writer is required."); }
+    for (final PhasedTestThread t : writers) { phaser.register(); t.start(); }
+    for (final PhasedTestThread t : readers) { phaser.register(); t.start(); }
+  }
+
+  /**
+   * Do a single trial and wait for all threads to finish it.
+   * @param uPerTrial number of uniques per trial
+   */
+  public void doTrial(final long uPerTrial) {
+    opsPerWriter = Math.max(uPerTrial / writers.size(), 1);
+    writeOpsCounter.reset();
+    readOpsCounter.reset();
+    writersRemaining.set(writers.size());
+    writersDone = false;
+    generation++; //publishes the fields above to the workers
+    for (final PhasedTestThread t : writers) { LockSupport.unpark(t); }
+    for (final PhasedTestThread t : readers) { LockSupport.unpark(t); }
+    phaser.arriveAndAwaitAdvance(); //start gate
+    phaser.arriveAndAwaitAdvance(); //end gate
+
+    long minStart = Long.MAX_VALUE;
+    long maxStop = Long.MIN_VALUE;
+    for (final PhasedTestThread t : writers) {
+      minStart = Math.min(minStart, t.startTimeNS);
+      maxStop = Math.max(maxStop, t.stopTimeNS);
+    }
+    totalTimeNS = maxStop - minStart;
+  }
+
+  /**
+   * Gets the number of write operations of the last trial
+   * @return the number of write operations of the last trial
+   */
+  public long getNumWrites() {
+    return writeOpsCounter.sum();
+  }
+
+  /**
+   * Gets the number of read operations of the last trial
+   * @return the number of read operations of the last trial
+   */
+  public long getNumReads() {
+    return readOpsCounter.sum();
+  }
+
+  /**
+   * Gets the time in nanoseconds from the first writer start to the last writer stop of the last trial
+   * @return total time nanoseconds
+   */
+  public long getTotalTimeNS() { return totalTimeNS; }
+
+  /**
+   * Stop all threads
+   */
+  public void stopAllThreads() {
+    stop = true;
+    for (final PhasedTestThread t : writers) { LockSupport.unpark(t); }
+    for (final PhasedTestThread t : readers) { LockSupport.unpark(t); }
+  }
+
+  private final class PhasedTestThread extends Thread {
+    private final Runnable op;
+    private final boolean isWriter;
+    long startTimeNS;
+    long stopTimeNS;
+
+    PhasedTestThread(final Runnable op, final boolean isWriter, final String name) {
+      super(name);
+      this.op = op;
+      this.isWriter = isWriter;
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      int seen = 0;
+      while (true) {
+        while ((generation == seen) && !stop) {
+          LockSupport.park(this);
+        }
+        if (stop) { return; }
+        seen = generation;
+        phaser.arriveAndAwaitAdvance(); //start gate
+        startTimeNS = System.nanoTime();
+        if (isWriter) {
+          for (long i = opsPerWriter; i-- > 0;) {
+            op.run();
+          }
+          stopTimeNS = System.nanoTime();
+          writeOpsCounter.add(opsPerWriter);
+          if (writersRemaining.decrementAndGet() == 0) { writersDone = true; }
+        } else {
+          long ops = 0;
+          while (!writersDone) {
+            op.run();
+            ops++;
+          }
+          stopTimeNS = System.nanoTime();
+          readOpsCounter.add(ops);
+        }
+        phaser.arriveAndAwaitAdvance(); //end gate
+      }
+    }
+  }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.cpc;
+
+import org.apache.datasketches.characterization.uniquecount.BaseBatchUpdateSpeedProfile;
+import org.apache.datasketches.cpc.CpcRedirects;
+import org.apache.datasketches.cpc.CpcSketch;
+import org.apache.datasketches.hash.MurmurHash3;
+
+/**
+ * Compares per-item CPC updates against hash-then-insert batches of 128-bit hashes.
+ */
+public class CpcBatchUpdateSpeedProfile extends BaseBatchUpdateSpeedProfile {
+  private final CpcRedirects redirects = new CpcRedirects();
+  private final long[] key = new long[1];
+  private CpcSketch sketch;
+  private long[] hashes; //two longs per key
+  private long seed;
+
+  @Override
+  public void configureSketch(final int maxBatchSize) {
+    final int lgK = Integer.parseInt(prop.mustGet("LgK"));
+    sketch = new CpcSketch(lgK);
+    seed = redirects.getSeed(sketch);
+    hashes = new long[2 * maxBatchSize];
+  }
+
+  @Override
+  public void resetSketch() {
+    sketch.reset();
+  }
+
+  @Override
+  public void updateItems(final long firstKey, final int count) {
+    final long end = firstKey + count;
+    for (long v = firstKey; v < end; v++) {
+      sketch.update(v);
+    }
+  }
+
+  @Override
+  public void hashBatch(final long firstKey, final int len) {
+    for (int i = 0, j = 0; i < len; i++) {
+      key[0] = firstKey + i;
+      final long[] hash = MurmurHash3.hash(key, seed);
+      hashes[j++] = hash[0];
+      hashes[j++] = hash[1];
+    }
+  }
+
+  @Override
+  public void insertBatch(final int len) {
+    final int end = 2 * len;
+    int j = 0;
+    for (final int end4 = end & ~7; j < end4; j += 8) { //unrolled by 4 keys
+      redirects.hashUpdate(sketch, hashes[j], hashes[j + 1]);
+      redirects.hashUpdate(sketch, hashes[j + 2], hashes[j + 3]);
+      redirects.hashUpdate(sketch, hashes[j + 4], hashes[j + 5]);
+      redirects.hashUpdate(sketch, hashes[j + 6], hashes[j + 7]);
+    }
+    for ( ; j < end; j += 2) {
+      redirects.hashUpdate(sketch, hashes[j], hashes[j + 1]);
+    }
+  }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.cpc;
+
+import org.apache.datasketches.Job;
+import org.apache.datasketches.JobProfile;
+import org.apache.datasketches.Properties;
+import org.apache.datasketches.characterization.concurrent.BarrierTestDriver;
+import org.apache.datasketches.cpc.CpcRedirects;
+import org.apache.datasketches.cpc.CpcSketch;
+
+/**
+ * Compression (toByteArray()) and uncompression (heapify()) speed of CPC sketches per flavor.
+ *
+ * <p>For each lgK a probe sketch finds the N at which each flavor starts. The sketches of a flavor
+ * are then built with the N halfway into the flavor's range, or, for SLIDING, with
+ * Compress_slidingFactor times the N at which SLIDING starts.</p>
+ *
+ * <p>Compress_numSketches distinct sketches are compressed and uncompressed 2^Trials_lgT times,
+ * split evenly across the threads of each count in Sweep_threads (0 = number of available
+ * processors). The throughput in MB/s is given in bytes of the uncompressed state, i.e., the sliding
+ * window plus the pair table, and with more than one thread it is the aggregate of all threads.</p>
+ */
+public class CpcCompressionSpeedProfile implements JobProfile {
+  private static final String[] FLAVORS = {"EMPTY", "SPARSE", "HYBRID", "PINNED", "SLIDING"};
+  private final CpcRedirects redirects = new CpcRedirects();
+  private Job job;
+  private Properties prop;
+  private long vIn = 0;
+  private int lgT;
+  private int numSketches;
+  private int slidingFactor;
+
+  //JobProfile
+  @Override
+  public void start(final Job job) {
+    this.job = job;
+    prop = job.getProperties();
+    lgT = Integer.parseInt(prop.mustGet("Trials_lgT"));
+    numSketches = Integer.parseInt(prop.mustGet("Compress_numSketches"));
+    slidingFactor = Integer.parseInt(prop.mustGet("Compress_slidingFactor"));
+    doSweep();
+    shutdown();
+    cleanup();
+  }
+
+  @Override
+  public void shutdown() {}
+
+  @Override
+  public void cleanup() {}
+  //end JobProfile
+
+  private void doSweep() {
+    final int lgMinK = Integer.parseInt(prop.mustGet("Sweep_lgMinK"));
+    final int lgMaxK = Integer.parseInt(prop.mustGet("Sweep_lgMaxK"));
+    final String[] threads = prop.mustGet("Sweep_threads").split(",");
+    final StringBuilder dataStr = new StringBuilder();
+    job.println(getHeader());
+    for (int lgK = lgMinK; lgK <= lgMaxK; lgK++) {
+      final long[] flavorN = getFlavorN(lgK);
+      for (int f = 0; f < FLAVORS.length; f++) {
+        final CpcSketch[] sketches = new CpcSketch[numSketches];
+        for (int s = 0; s < numSketches; s++) {
+          sketches[s] = new CpcSketch(lgK);
+          for (long u = 0; u < flavorN[f]; u++) { sketches[s].update(++vIn); }
+        }
+        for (int i = 0; i < threads.length; i++) {
+          int numThreads = Integer.parseInt(threads[i].trim());
+          if (numThreads <= 0) { numThreads = Runtime.getRuntime().availableProcessors(); }
+          doTrials(sketches, FLAVORS[f], flavorN[f], Math.min(numThreads, numSketches), dataStr);
+        }
+      }
+    }
+  }
+
+  /**
+   * Grows a probe sketch until it reaches SLIDING and returns the N used for each flavor.
+   */
+  private long[] getFlavorN(final int lgK) {
+    final long[] firstN = new long[FLAVORS.length];
+    final CpcSketch probe = new CpcSketch(lgK);
+    int flavor = 0;
+    long n = 0;
+    while (flavor < FLAVORS.length - 1) {
+      probe.update(++vIn);
+      n++;
+      final String name = redirects.getFlavorName(probe);
+      while (!FLAVORS[flavor].equals(name)) {
+        flavor++;
+        firstN[flavor] = n;
+      }
+    }
+    final long[] flavorN = new long[FLAVORS.length];
+    for (int f = 1; f < FLAVORS.length - 1; f++) {
+      flavorN[f] = (firstN[f] + firstN[f + 1]) / 2;
+    }
+    flavorN[FLAVORS.length - 1] = firstN[FLAVORS.length - 1] * slidingFactor;
+    return flavorN;
+  }
+
+  private void doTrials(final CpcSketch[] sketches, final String flavor, final long n,
+      final int numThreads, final StringBuilder dataStr) {
+    final int trials = 1 << lgT;
+    final byte[][] images = new byte[numSketches][];
+    long uncompressedBytes = 0;
+    long compressedBytes = 0;
+    long coupons = 0;
+    for (int s = 0; s < numSketches; s++) { //also warms up
+      images[s] = sketches[s].toByteArray();
+      final CpcSketch copy = CpcSketch.heapify(images[s]);
+      if (redirects.getNumCoupons(copy) != redirects.getNumCoupons(sketches[s])) {
+        throw new IllegalStateException("Round trip changed the number of coupons.");
+      }
+      uncompressedBytes += redirects.getUncompressedBytes(sketches[s]);
+      compressedBytes += images[s].length;
+      coupons += redirects.getNumCoupons(sketches[s]);
+    }
+
+    final BarrierTestDriver driver = new BarrierTestDriver(numThreads);
+    System.gc();
+    final long compressTime_nS = driver.run(index -> {
+      final int lo = (int) (((long) numSketches * index) / numThreads);
+      final int hi = (int) (((long) numSketches * (index + 1)) / numThreads);
+      for (int t = 0; t < trials; t++) {
+        for (int s = lo; s < hi; s++) { images[s] = sketches[s].toByteArray(); }
+      }
+    });
+    final long uncompressTime_nS = driver.run(index -> {
+      final int lo = (int) (((long) numSketches * index) / numThreads);
+      final int hi = (int) (((long) numSketches * (index + 1)) / numThreads);
+      for (int t = 0; t < trials; t++) {
+        for (int s = lo; s < hi; s++) { CpcSketch.heapify(images[s]); }
+      }
+    });
+    driver.shutdown();
+
+    final double totalSketches = (double) numSketches * trials;
+    final double totalMB = uncompressedBytes * (double) trials / (1 << 20);
+
+    //OUTPUT
+    dataStr.setLength(0);
+    dataStr.append(sketches[0].getLgK()).append(TAB);
+    dataStr.append(flavor).append(TAB);
+    dataStr.append(n).append(TAB);
+    dataStr.append((double) coupons / numSketches).append(TAB);
+    dataStr.append(numThreads).append(TAB);
+    dataStr.append(numSketches).append(TAB);
+    dataStr.append(trials).append(TAB);
+    dataStr.append((double) uncompressedBytes / numSketches).append(TAB);
+    dataStr.append((double) compressedBytes / numSketches).append(TAB);
+    dataStr.append((double) uncompressedBytes / compressedBytes).append(TAB);
+    dataStr.append(compressTime_nS / totalSketches).append(TAB);
+    dataStr.append(uncompressTime_nS / totalSketches).append(TAB);
+    dataStr.append(totalMB * 1E9 / compressTime_nS).append(TAB);
+    dataStr.append(totalMB * 1E9 / uncompressTime_nS);
+    job.println(dataStr.toString());
+  }
+
+  private static String getHeader() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("LgK").append(TAB);
+    sb.append("Flavor").append(TAB);
+    sb.append("N").append(TAB);
+    sb.append("Coupons").append(TAB);
+    sb.append("Threads").append(TAB);
+    sb.append("Sketches").append(TAB);
+    sb.append("Trials").append(TAB);
+    sb.append("UncompBytes").append(TAB);
+    sb.append("CompBytes").append(TAB);
+    sb.append("Ratio").append(TAB);
+    sb.append("Compress_nS").append(TAB);
+    sb.append("Uncompress_nS").append(TAB);
+    sb.append("Compress_MB/s").append(TAB);
+    sb.append("Uncompress_MB/s");
+    return sb.toString();
+  }
+
+}
@@ -28,6 +28,8 @@ import org.apache.datasketches.Properties;
 import org.apache.datasketches.cpc.MergingValidation;
 
 /**
+ * Runs the lgK values in parallel, see {@link CpcValidationDriver}.
+ *
  * @author Lee Rhodes
  */
 public class CpcMergingValidationProfile implements JobProfile {
@@ -39,6 +41,7 @@ public class CpcMergingValidationProfile implements JobProfile {
   int lgMulK;
   int uPPO;
   int incLgK;
+  int numThreads;
   PrintStream ps;
   PrintWriter pw;
 
@@ -52,13 +55,13 @@ public class CpcMergingValidationProfile implements JobProfile {
     lgMulK = Integer.parseInt(prop.mustGet("lgMulK"));
     uPPO = Integer.parseInt(prop.mustGet("uPPO"));
     incLgK = Integer.parseInt(prop.mustGet("incLgK"));
+    numThreads = Integer.parseInt(prop.mustGet("numThreads"));
 
     ps = System.out;
     pw = job.getPrintWriter();
 
-    final MergingValidation mv = new MergingValidation(
-        lgMinK, lgMaxK, lgMulK, uPPO, incLgK, ps, pw);
-    mv.start();
+    CpcValidationDriver.run(job, ps, lgMinK, lgMaxK, incLgK, numThreads, (lgK, ups, upw) ->
+        new MergingValidation(lgK, lgK, lgMulK, uPPO, incLgK, ups, upw).start());
   }
 
   @Override
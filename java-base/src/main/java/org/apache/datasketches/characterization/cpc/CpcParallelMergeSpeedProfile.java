@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.cpc;
+
+import org.apache.datasketches.characterization.uniquecount.BaseParallelMergeSpeedProfile;
+import org.apache.datasketches.cpc.CpcSketch;
+import org.apache.datasketches.cpc.CpcUnion;
+
+/**
+ * Parallel reduction of pre-built CPC sketches.
+ */
+public class CpcParallelMergeSpeedProfile extends BaseParallelMergeSpeedProfile<CpcSketch, CpcUnion> {
+  private int lgK;
+
+  @Override
+  public void configure() {
+    lgK = Integer.parseInt(prop.mustGet("LgK"));
+  }
+
+  @Override
+  public CpcSketch newSourceSketch(final int uPerSketch) {
+    final CpcSketch sketch = new CpcSketch(lgK);
+    for (int u = uPerSketch; u-- > 0;) {
+      sketch.update(++vIn);
+    }
+    return sketch;
+  }
+
+  @Override
+  public CpcUnion newUnion() {
+    return new CpcUnion(lgK);
+  }
+
+  @Override
+  public void merge(final CpcUnion union, final CpcSketch sketch) {
+    union.update(sketch);
+  }
+
+  @Override
+  public CpcSketch getResult(final CpcUnion union) {
+    return union.getResult();
+  }
+
+  @Override
+  public double getEstimate(final CpcSketch sketch) {
+    return sketch.getEstimate();
+  }
+
+}
@@ -28,6 +28,8 @@ import org.apache.datasketches.Properties;
 import org.apache.datasketches.cpc.QuickMergingValidation;
 
 /**
+ * Runs the lgK values in parallel, see {@link CpcValidationDriver}.
+ *
  * @author Lee Rhodes
  */
 public class CpcQuickMergingValidationProfile implements JobProfile {
@@ -38,6 +40,7 @@ public class CpcQuickMergingValidationProfile implements JobProfile {
   int lgMinK;
   int lgMaxK; //inclusive
   int incLgK;
+  int numThreads;
   PrintStream ps;
   PrintWriter pw;
 
@@ -49,13 +52,13 @@ public class CpcQuickMergingValidationProfile implements JobProfile {
     lgMinK = Integer.parseInt(prop.mustGet("lgMinK"));
     lgMaxK = Integer.parseInt(prop.mustGet("lgMaxK"));
     incLgK = Integer.parseInt(prop.mustGet("incLgK"));
+    numThreads = Integer.parseInt(prop.mustGet("numThreads"));
 
     ps = System.out;
     pw = job.getPrintWriter();
 
-    final QuickMergingValidation mv = new QuickMergingValidation(
-        lgMinK, lgMaxK, incLgK, ps, pw);
-    mv.start();
+    CpcValidationDriver.run(job, ps, lgMinK, lgMaxK, incLgK, numThreads, (lgK, ups, upw) ->
+        new QuickMergingValidation(lgK, lgK, incLgK, ups, upw).start());
   }
 
   @Override
@@ -28,6 +28,8 @@ import org.apache.datasketches.Properties;
 import org.apache.datasketches.cpc.StreamingValidation;
 
 /**
+ * Runs the lgK values in parallel, see {@link CpcValidationDriver}.
+ *
  * @author Lee Rhodes
  */
 public class CpcStreamingValidationProfile implements JobProfile {
@@ -38,6 +40,7 @@ public class CpcStreamingValidationProfile implements JobProfile {
   int lgMaxK;
   int trials;
   int ppoN;
+  int numThreads;
   PrintStream ps;
   PrintWriter pw;
 
@@ -51,8 +54,9 @@ public class CpcStreamingValidationProfile implements JobProfile {
     lgMaxK = Integer.parseInt(prop.mustGet("lgMaxK"));
     trials = Integer.parseInt(prop.mustGet("trials"));
     ppoN = Integer.parseInt(prop.mustGet("ppoN"));
-    final StreamingValidation sVal = new StreamingValidation(lgMinK, lgMaxK, trials, ppoN, ps, pw);
-    sVal.start();
+    numThreads = Integer.parseInt(prop.mustGet("numThreads"));
+    CpcValidationDriver.run(job, ps, lgMinK, lgMaxK, 1, numThreads, (lgK, ups, upw) ->
+        new StreamingValidation(lgK, lgK, trials, ppoN, ups, upw).start());
   }
 
   @Override
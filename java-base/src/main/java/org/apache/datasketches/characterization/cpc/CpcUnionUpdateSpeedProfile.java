@@ -19,37 +19,69 @@
 
 package org.apache.datasketches.characterization.cpc;
 
-import java.lang.reflect.Array;
-
+import org.apache.datasketches.characterization.concurrent.BarrierTestDriver;
 import org.apache.datasketches.characterization.uniquecount.BaseUpdateSpeedProfile;
 import org.apache.datasketches.cpc.CpcSketch;
 import org.apache.datasketches.cpc.CpcUnion;
 
+/**
+ * Speed of a CpcUnion over NumSketches source sketches.
+ *
+ * <p>The source sketches are allocated once and refilled only when the U point changes, so all
+ * trials of a U point union the same pool of sketches and no source sketches are allocated inside
+ * the trials. CpcUnion has no reset, so each trial still builds a new union, outside the timed
+ * region. The timed region covers the updates of the union and its getResult().</p>
+ *
+ * <p>If the optional list Union_threads is given, after the trials of a U point the same number of
+ * trials unions the pool with each of the given numbers of threads: every thread unions its own
+ * partition of the pool and gets its partial result, and the partial results are then combined by
+ * a final union and its getResult(). As in the single threaded trials, the unions are built before
+ * the timed region. The time per merged sketch for each thread count is appended as a column.</p>
+ */
 public class CpcUnionUpdateSpeedProfile extends BaseUpdateSpeedProfile {
   private int lgK;
   private int numSketches;
   private CpcSketch[] sketches;
+  private int poolU = -1;
+  private int[] threads = new int[0];
+  private BarrierTestDriver[] drivers;
+  private CpcSketch[][] partials;
+  private CpcUnion[][] partUnions;
 
   @Override
   public void configure() {
     lgK = Integer.parseInt(prop.mustGet("LgK"));
     numSketches = Integer.parseInt(prop.mustGet("NumSketches"));
-    sketches = (CpcSketch[]) Array.newInstance(CpcSketch.class, numSketches);
-  }
-
-  @Override
-  public double doTrial(final int uPerTrial) {
+    sketches = new CpcSketch[numSketches];
     for (int i = 0; i < numSketches; i++) {
       sketches[i] = new CpcSketch(lgK);
     }
-
-    { // spray values across all sketches
-      int i = 0;
-      for (int u = uPerTrial; u-- > 0;) {
-        sketches[i++].update(++vIn);
-        if (i == numSketches) { i = 0; }
+    final String threadsStr = prop.get("Union_threads");
+    if ((threadsStr != null) && !threadsStr.trim().isEmpty()) {
+      final String[] list = threadsStr.split(",");
+      threads = new int[list.length];
+      for (int i = 0; i < list.length; i++) {
+        threads[i] = Math.min(Integer.parseInt(list[i].trim()), numSketches);
       }
     }
+    drivers = new BarrierTestDriver[threads.length];
+    partials = new CpcSketch[threads.length][];
+    partUnions = new CpcUnion[threads.length][];
+    for (int i = 0; i < threads.length; i++) {
+      drivers[i] = new BarrierTestDriver(threads[i]);
+      partials[i] = new CpcSketch[threads[i]];
+      partUnions[i] = new CpcUnion[threads[i]];
+    }
+  }
+
+  @Override
+  public void cleanup() {
+    for (final BarrierTestDriver driver : drivers) { driver.shutdown(); }
+  }
+
+  @Override
+  public double doTrial(final int uPerTrial) {
+    if (uPerTrial != poolU) { fillPool(uPerTrial); }
 
     final CpcUnion union = new CpcUnion(lgK);
     final long startUpdateTime_nS = System.nanoTime();
@@ -57,9 +89,75 @@ public class CpcUnionUpdateSpeedProfile extends BaseUpdateSpeedProfile {
     for (int i = numSketches; i-- > 0;) {
       union.update(sketches[i]);
     }
+    union.getResult();
 
     final long updateTime_nS = System.nanoTime() - startUpdateTime_nS;
     return updateTime_nS;
   }
 
+  private void fillPool(final int uPerTrial) {
+    for (int i = 0; i < numSketches; i++) {
+      sketches[i].reset();
+    }
+    // spray values across all sketches
+    int i = 0;
+    for (int u = uPerTrial; u-- > 0;) {
+      sketches[i++].update(++vIn);
+      if (i == numSketches) { i = 0; }
+    }
+    poolU = uPerTrial;
+  }
+
+  /**
+   * Unions the pool with the driver at the given index and combines the partial results.
+   * @param d the index of the driver
+   * @return the elapsed time in nanoseconds
+   */
+  private long doParallelUnion(final int d) {
+    final int numThreads = threads[d];
+    final CpcSketch[] parts = partials[d];
+    final CpcUnion[] unions = partUnions[d];
+    for (int i = 0; i < numThreads; i++) {
+      unions[i] = new CpcUnion(lgK);
+    }
+    final CpcUnion union = new CpcUnion(lgK);
+    final long driverTime_nS = drivers[d].run(index -> {
+      final int lo = (int) (((long) numSketches * index) / numThreads);
+      final int hi = (int) (((long) numSketches * (index + 1)) / numThreads);
+      final CpcUnion part = unions[index];
+      for (int i = lo; i < hi; i++) {
+        part.update(sketches[i]);
+      }
+      parts[index] = part.getResult();
+    });
+    final long startCombineTime_nS = System.nanoTime();
+    for (int i = 0; i < numThreads; i++) {
+      union.update(parts[i]);
+    }
+    union.getResult();
+    return driverTime_nS + (System.nanoTime() - startCombineTime_nS);
+  }
+
+  @Override
+  public void appendHeaderColumns(final StringBuilder sb) {
+    for (int i = 0; i < threads.length; i++) {
+      sb.append(TAB).append("nS/Sketch_T").append(threads[i]);
+    }
+  }
+
+  /**
+   * Runs the multithreaded trials of the U point, after its single threaded trials so that their
+   * allocations do not land in the timed regions of those, and appends their columns.
+   */
+  @Override
+  public void appendDataColumns(final StringBuilder sb, final int trials) {
+    for (int d = 0; d < threads.length; d++) {
+      long sumTime_nS = 0;
+      for (int t = 0; t < trials; t++) {
+        sumTime_nS += doParallelUnion(d);
+      }
+      sb.append(TAB).append((double) sumTime_nS / trials / numSketches);
+    }
+  }
+
 }
@@ -20,18 +20,29 @@
 package org.apache.datasketches.characterization.cpc;
 
 import org.apache.datasketches.characterization.uniquecount.BaseUpdateSpeedProfile;
+import org.apache.datasketches.characterization.uniquecount.PreHashedTrials;
+import org.apache.datasketches.cpc.CpcRedirects;
 import org.apache.datasketches.cpc.CpcSketch;
+import org.apache.datasketches.hash.MurmurHash3;
 
 /**
+ * With PreHashed=true the keys are hashed into a long[] buffer, two longs per key, before the
+ * insert is timed, which separates the cost of MurmurHash3 from the cost of the CPC update.
+ *
  * @author Lee Rhodes
  */
-public class CpcUpdateSpeedProfile extends BaseUpdateSpeedProfile {
+public class CpcUpdateSpeedProfile extends BaseUpdateSpeedProfile implements PreHashedTrials {
+  private final CpcRedirects redirects = new CpcRedirects();
+  private final long[] key = new long[1];
   private CpcSketch sketch;
+  private long[] hashes;
+  private long seed;
 
   @Override
   public void configure() {
     final int lgK = Integer.parseInt(prop.mustGet("LgK"));
     sketch = new CpcSketch(lgK);
+    seed = redirects.getSeed(sketch);
   }
 
   @Override
@@ -46,4 +57,31 @@ public class CpcUpdateSpeedProfile extends BaseUpdateSpeedProfile {
     return (double) updateTime_nS / uPerTrial;
   }
 
+  @Override
+  public double doHashTrial(final int uPerTrial) {
+    if (hashes == null || hashes.length < 2 * uPerTrial) { hashes = new long[2 * uPerTrial]; }
+    final long startHashTime_nS = System.nanoTime();
+
+    for (int u = 0, i = 0; u < uPerTrial; u++) {
+      key[0] = ++vIn;
+      final long[] hash = MurmurHash3.hash(key, seed);
+      hashes[i++] = hash[0];
+      hashes[i++] = hash[1];
+    }
+    final long hashTime_nS = System.nanoTime() - startHashTime_nS;
+    return (double) hashTime_nS / uPerTrial;
+  }
+
+  @Override
+  public double doInsertTrial(final int uPerTrial) {
+    sketch.reset(); // reuse the same sketch
+    final long startInsertTime_nS = System.nanoTime();
+
+    for (int u = 0, i = 0; u < uPerTrial; u++, i += 2) {
+      redirects.hashUpdate(sketch, hashes[i], hashes[i + 1]);
+    }
+    final long insertTime_nS = System.nanoTime() - startInsertTime_nS;
+    return (double) insertTime_nS / uPerTrial;
+  }
+
 }
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.cpc;
+
+import static org.apache.datasketches.common.Util.milliSecToString;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.datasketches.Job;
+
+/**
+ * Runs a CPC library validation once per lgK on a thread pool. Each lgK is a separate unit of work
+ * with its own validation object whose output goes to a private buffer. The buffers are emitted
+ * to the job in lgK order as they complete, with the title and column header printed only once.
+ * Since that can hold back the output of a finished lgK for hours, one progress line is printed
+ * to the progress stream as soon as each lgK finishes.
+ */
+final class CpcValidationDriver {
+  private static final int HEADER_LINES = 3; //blank line, title and column header printed by start()
+
+  /**
+   * Runs the validation of a single lgK.
+   */
+  interface Unit {
+
+    /**
+     * Runs the validation for the given lgK, printing to the given streams.
+     * @param lgK the lgK to validate
+     * @param ps the PrintStream given to the validation object
+     * @param pw the PrintWriter given to the validation object
+     */
+    void run(int lgK, PrintStream ps, PrintWriter pw);
+  }
+
+  private CpcValidationDriver() {}
+
+  /**
+   * Runs the unit for lgK = lgMinK, lgMinK + incLgK, ..., up to lgMaxK.
+   * @param job the job to print to
+   * @param progress the stream for a progress line per finished lgK
+   * @param lgMinK the first lgK
+   * @param lgMaxK the last lgK, inclusive
+   * @param incLgK the lgK increment
+   * @param numThreads the size of the thread pool, 0 = number of available processors
+   * @param unit the validation of one lgK
+   */
+  static void run(final Job job, final PrintStream progress, final int lgMinK, final int lgMaxK,
+      final int incLgK, final int numThreads, final Unit unit) {
+    final int threads = numThreads <= 0 ? Runtime.getRuntime().availableProcessors() : numThreads;
+    final ExecutorService pool = Executors.newFixedThreadPool(threads);
+    final List<Future<String>> futures = new ArrayList<>();
+    final long startTime_mS = System.currentTimeMillis();
+    for (int lgK = lgMinK; lgK <= lgMaxK; lgK += incLgK) {
+      final int lgKf = lgK;
+      futures.add(pool.submit(() -> {
+        final StringWriter sw = new StringWriter();
+        final PrintWriter pw = new PrintWriter(sw);
+        unit.run(lgKf, new PrintStream(NULL_STREAM), pw);
+        pw.flush();
+        progress.println("lgK " + lgKf + " done, elapsed: "
+            + milliSecToString(System.currentTimeMillis() - startTime_mS));
+        return sw.toString();
+      }));
+    }
+    pool.shutdown();
+    try {
+      for (int i = 0; i < futures.size(); i++) {
+        final String out = futures.get(i).get();
+        job.print(i == 0 ? out : stripHeader(out));
+        job.flush();
+      }
+    } catch (final InterruptedException | ExecutionException e) {
+      pool.shutdownNow();
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static String stripHeader(final String out) {
+    int pos = 0;
+    for (int i = 0; (i < HEADER_LINES) && (pos >= 0); i++) {
+      pos = out.indexOf('\n', pos);
+      if (pos >= 0) { pos++; }
+    }
+    return pos < 0 ? "" : out.substring(pos);
+  }
+
+  //the validation objects print everything to both streams, the PrintWriter copy is kept
+  private static final OutputStream NULL_STREAM = new OutputStream() {
+    @Override
+    public void write(final int b) {}
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) {}
+  };
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.hll;
+
+import static org.apache.datasketches.thetacommon.ThetaUtil.DEFAULT_UPDATE_SEED;
+
+import org.apache.datasketches.characterization.uniquecount.BaseBatchUpdateSpeedProfile;
+import org.apache.datasketches.hash.MurmurHash3;
+import org.apache.datasketches.hll.HllRedirects;
+import org.apache.datasketches.hll.HllSketch;
+import org.apache.datasketches.hll.TgtHllType;
+
+/**
+ * Compares per-item HLL updates against hash-then-insert batches of coupons.
+ */
+public class HllBatchUpdateSpeedProfile extends BaseBatchUpdateSpeedProfile {
+  private final HllRedirects redirects = new HllRedirects();
+  private final long[] key = new long[1];
+  private HllSketch sketch;
+  private int[] coupons;
+
+  @Override
+  public void configureSketch(final int maxBatchSize) {
+    final int lgK = Integer.parseInt(prop.mustGet("LgK"));
+
+    final TgtHllType tgtHllType;
+    final String type = prop.mustGet("HLL_tgtHllType");
+    if (type.equalsIgnoreCase("HLL4")) { tgtHllType = TgtHllType.HLL_4; }
+    else if (type.equalsIgnoreCase("HLL6")) { tgtHllType = TgtHllType.HLL_6; }
+    else { tgtHllType = TgtHllType.HLL_8; }
+
+    sketch = new HllSketch(lgK, tgtHllType);
+    coupons = new int[maxBatchSize];
+  }
+
+  @Override
+  public void resetSketch() {
+    sketch.reset();
+  }
+
+  @Override
+  public void updateItems(final long firstKey, final int count) {
+    final long end = firstKey + count;
+    for (long v = firstKey; v < end; v++) {
+      sketch.update(v);
+    }
+  }
+
+  @Override
+  public void hashBatch(final long firstKey, final int len) {
+    for (int i = 0; i < len; i++) {
+      key[0] = firstKey + i;
+      coupons[i] = redirects.coupon(MurmurHash3.hash(key, DEFAULT_UPDATE_SEED));
+    }
+  }
+
+  @Override
+  public void insertBatch(final int len) {
+    int i = 0;
+    for (final int end4 = len & ~3; i < end4; i += 4) { //unrolled by 4
+      redirects.couponUpdate(sketch, coupons[i]);
+      redirects.couponUpdate(sketch, coupons[i + 1]);
+      redirects.couponUpdate(sketch, coupons[i + 2]);
+      redirects.couponUpdate(sketch, coupons[i + 3]);
+    }
+    for ( ; i < len; i++) {
+      redirects.couponUpdate(sketch, coupons[i]);
+    }
+  }
+
+}
@@ -31,14 +31,21 @@ import java.util.Arrays;
 import org.apache.datasketches.Job;
 import org.apache.datasketches.JobProfile;
 import org.apache.datasketches.Properties;
+import org.apache.datasketches.characterization.concurrent.BarrierTestDriver;
 import org.apache.datasketches.hll.HllSketch;
 import org.apache.datasketches.hll.TgtHllType;
 import org.apache.datasketches.memory.WritableMemory;
 import org.apache.datasketches.quantiles.DoublesSketch;
 import org.apache.datasketches.quantiles.DoublesSketchBuilder;
+import org.apache.datasketches.quantiles.DoublesUnion;
 import org.apache.datasketches.quantiles.UpdateDoublesSketch;
 
 /**
+ * The trials are run on Trials_numThreads worker threads (0 = number of available processors). Each
+ * worker has its own sketch and its own shard of the per estimate statistics, which are merged into
+ * the cumulative statistics at the end of every trials set. Trial t always uses the same range of
+ * input values, independent of the number of threads.
+ *
  * @author Lee Rhodes
  */
 public class HllConfidenceIntervalInverseProfile implements JobProfile {
@@ -61,6 +68,8 @@ public class HllConfidenceIntervalInverseProfile implements JobProfile {
   int tPPO;
 
   int lgQK; //size of quantile sketches
+  int numThreads;
+  long updatesPerTrial;
 
   // HLL Sketch profile - defaults
   int lgK;
@@ -69,7 +78,8 @@ public class HllConfidenceIntervalInverseProfile implements JobProfile {
   TgtHllType type = TgtHllType.HLL_4;
   boolean interData = true;
   EstimateStats[] estStatsArr = null;
-  private HllSketch sketch = null;
+  private Worker[] workers = null;
+  private BarrierTestDriver driver = null;
 
   //Other stats:
   int srcNlen;
@@ -97,10 +107,16 @@ public class HllConfidenceIntervalInverseProfile implements JobProfile {
     tPPO = Integer.parseInt(prop.mustGet("Trials_TPPO"));
     lgQK = Integer.parseInt(prop.mustGet("Trials_lgQK"));
     lgK = Integer.parseInt(prop.mustGet("LgK"));
+    numThreads = Integer.parseInt(prop.mustGet("Trials_numThreads"));
+    if (numThreads <= 0) { numThreads = Runtime.getRuntime().availableProcessors(); }
     srcNlen = maxSrcN - minSrcN + 1;
+    updatesPerTrial = ((long) minSrcN + maxSrcN) * srcNlen / 2;
     estStatsArr = buildEstimateStatsArray(minTgtEst, maxTgtEst, lgQK);
     qNinTgtEstRange = new DoublesSketchBuilder().setK(1 << lgQK).build();
     configureSketch();
+    workers = new Worker[numThreads];
+    for (int i = 0; i < numThreads; i++) { workers[i] = new Worker(); }
+    driver = new BarrierTestDriver(numThreads);
     doTrials();
     shutdown();
     cleanup();
@@ -115,7 +131,9 @@ public class HllConfidenceIntervalInverseProfile implements JobProfile {
   }
 
   @Override
-  public void cleanup() {}
+  public void cleanup() {
+    driver.shutdown();
+  }
 
   public void configureSketch() {
     //Configure Sketch
@@ -127,34 +145,16 @@ public class HllConfidenceIntervalInverseProfile implements JobProfile {
     if (type.equalsIgnoreCase("HLL4")) { tgtHllType = TgtHllType.HLL_4; }
     else if (type.equalsIgnoreCase("HLL6")) { tgtHllType = TgtHllType.HLL_6; }
     else { tgtHllType = TgtHllType.HLL_8; }
+    this.type = tgtHllType;
+  }
 
+  HllSketch newSketch() {
     if (hllDirect) {
-      final int bytes = HllSketch.getMaxUpdatableSerializationBytes(lgK, tgtHllType);
+      final int bytes = HllSketch.getMaxUpdatableSerializationBytes(lgK, type);
       final WritableMemory wmem = WritableMemory.allocate(bytes);
-      sketch = new HllSketch(lgK, tgtHllType, wmem);
-    } else {
-      sketch = new HllSketch(lgK, tgtHllType);
+      return new HllSketch(lgK, type, wmem);
     }
-  }
-
-  public void doTrial() {
-    for (int n = minSrcN; n <= maxSrcN; n++) { //srcN range: from 1300 to 17000
-      sketch.reset();
-      for (long u = 0; u < n; u++) { //update sketch with n uniques
-        sketch.update(++vIn);
-      }
-      final double rawEst = useComposite ? sketch.getCompositeEstimate() : sketch.getEstimate();
-      final int est = (int)Math.round(rawEst);
-      if (est >= minTgtEst && est <= maxTgtEst) { //est range
-        final int deltaEst = est - minTgtEst;
-        final EstimateStats q = estStatsArr[deltaEst];
-        if (q.estimate != est) {
-          throw new IllegalArgumentException("q.estimate: " + q.estimate + " != est: " + est);
-        }
-        q.update(n); //distribution of srcN values in the target est bin (row)
-        qNinTgtEstRange.update(n); //distribution of srcN values in the target estimate range
-      }
-    } // end scan of N
+    return new HllSketch(lgK, type);
   }
 
   private void doTrials() {
@@ -163,9 +163,14 @@ public class HllConfidenceIntervalInverseProfile implements JobProfile {
     while (lastT < maxT) {
       final int nextT = lastT == 0 ? minT : (int)pwr2SeriesNext(tPPO, lastT);
       final int delta = nextT - lastT;
-      for (int i = 0; i < delta; i++) {
-        doTrial();
-      }
+      final long setBase = vIn;
+      driver.run(index -> { //worker index runs trials index, index + numThreads, ...
+        for (int i = index; i < delta; i += numThreads) {
+          workers[index].doTrial(setBase + (i * updatesPerTrial));
+        }
+      });
+      vIn += delta * updatesPerTrial;
+      for (int i = 0; i < numThreads; i++) { workers[i].mergeInto(); }
       lastT = nextT;
       final StringBuilder sb = new StringBuilder();
       if (nextT < maxT) { // intermediate
@@ -309,6 +314,66 @@ public class HllConfidenceIntervalInverseProfile implements JobProfile {
     public void update(final double n) {
       qskN.update(n);
     }
+
+    /**
+     * Merges the given shard into this and resets the shard.
+     * @param shard the EstimateStats of a worker for the same estimate
+     */
+    public void merge(final EstimateStats shard) {
+      qskN = union(qskN, shard.qskN);
+      shard.qskN.reset();
+    }
+  }
+
+  static UpdateDoublesSketch union(final UpdateDoublesSketch a, final UpdateDoublesSketch b) {
+    if (b.isEmpty()) { return a; }
+    final DoublesUnion union = DoublesUnion.builder().setMaxK(a.getK()).build();
+    union.union(a);
+    union.union(b);
+    return union.getResult();
+  }
+
+  /**
+   * The sketch and the statistics shard of one worker thread.
+   */
+  private final class Worker {
+    private final HllSketch sketch = newSketch();
+    private final EstimateStats[] estStatsShard = buildEstimateStatsArray(minTgtEst, maxTgtEst, lgQK);
+    private final UpdateDoublesSketch qNShard = new DoublesSketchBuilder().setK(1 << lgQK).build();
+
+    /**
+     * Runs one trial using the input values base + 1 to base + updatesPerTrial.
+     * @param base the value before the first input value
+     */
+    void doTrial(final long base) {
+      long v = base;
+      for (int n = minSrcN; n <= maxSrcN; n++) { //srcN range: from 1300 to 17000
+        sketch.reset();
+        for (long u = 0; u < n; u++) { //update sketch with n uniques
+          sketch.update(++v);
+        }
+        final double rawEst = useComposite ? sketch.getCompositeEstimate() : sketch.getEstimate();
+        final int est = (int)Math.round(rawEst);
+        if (est >= minTgtEst && est <= maxTgtEst) { //est range
+          final int deltaEst = est - minTgtEst;
+          final EstimateStats q = estStatsShard[deltaEst];
+          if (q.estimate != est) {
+            throw new IllegalArgumentException("q.estimate: " + q.estimate + " != est: " + est);
+          }
+          q.update(n); //distribution of srcN values in the target est bin (row)
+          qNShard.update(n); //distribution of srcN values in the target estimate range
+        }
+      } // end scan of N
+    }
+
+    /**
+     * Merges this worker's shard into the cumulative statistics and resets the shard.
+     */
+    void mergeInto() {
+      for (int i = 0; i < tgtEstArrLen; i++) { estStatsArr[i].merge(estStatsShard[i]); }
+      qNinTgtEstRange = union(qNinTgtEstRange, qNShard);
+      qNShard.reset();
+    }
   }
 
   private final EstimateStats[] buildEstimateStatsArray(
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.hll;
+
+import org.apache.datasketches.characterization.uniquecount.BaseCorpusMergeProfile;
+import org.apache.datasketches.hll.HllSketch;
+import org.apache.datasketches.hll.TgtHllType;
+import org.apache.datasketches.hll.Union;
+import org.apache.datasketches.memory.Memory;
+
+/**
+ * Merges a memory-mapped corpus of compact HLL sketches via wrap or heapify.
+ */
+public class HllCorpusMergeProfile extends BaseCorpusMergeProfile<Union> {
+  private int lgK;
+  private TgtHllType tgtHllType;
+
+  @Override
+  public void configure() {
+    lgK = Integer.parseInt(prop.mustGet("LgK"));
+    final String type = prop.mustGet("HLL_tgtHllType");
+    if (type.equalsIgnoreCase("HLL4")) { tgtHllType = TgtHllType.HLL_4; }
+    else if (type.equalsIgnoreCase("HLL6")) { tgtHllType = TgtHllType.HLL_6; }
+    else { tgtHllType = TgtHllType.HLL_8; }
+  }
+
+  @Override
+  public byte[] newSerializedSketch(final int uPerSketch) {
+    final HllSketch sketch = new HllSketch(lgK, tgtHllType);
+    for (int u = uPerSketch; u-- > 0;) {
+      sketch.update(++vIn);
+    }
+    return sketch.toCompactByteArray();
+  }
+
+  @Override
+  public Union newUnion() {
+    return new Union(lgK);
+  }
+
+  @Override
+  public void mergeWrapped(final Union union, final Memory mem) {
+    union.update(HllSketch.wrap(mem));
+  }
+
+  @Override
+  public void mergeHeapified(final Union union, final Memory mem) {
+    union.update(HllSketch.heapify(mem));
+  }
+
+  @Override
+  public void combine(final Union target, final Union source) {
+    target.update(source.getResult(tgtHllType));
+  }
+
+  @Override
+  public double getEstimate(final Union union) {
+    return union.getEstimate();
+  }
+
+}
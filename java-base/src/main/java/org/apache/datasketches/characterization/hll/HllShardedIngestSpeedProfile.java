@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.hll;
+
+import org.apache.datasketches.Job;
+import org.apache.datasketches.JobProfile;
+import org.apache.datasketches.Properties;
+import org.apache.datasketches.characterization.concurrent.BarrierTestDriver;
+import org.apache.datasketches.hll.HllSketch;
+import org.apache.datasketches.hll.TgtHllType;
+import org.apache.datasketches.hll.Union;
+
+/**
+ * Striped multi-threaded HLL ingestion: each of N threads owns an HllSketch and updates it with
+ * its own share of the stream. At the end of each trial the N sketches are merged through a Union.
+ *
+ * <p>For each thread count from Ingest_minThreads to Ingest_maxThreads a row is output with the
+ * aggregate ingestion throughput, the speedup relative to the first row, the cost of the final
+ * merge and the relative error of the merged estimate.</p>
+ */
+public class HllShardedIngestSpeedProfile implements JobProfile {
+  private Job job;
+  private Properties prop;
+  private long vIn = 0;
+  private int lgK;
+  private TgtHllType tgtHllType;
+  private int lgT;
+  private int lgU;
+  private int minThreads;
+  private int maxThreads;
+
+  //JobProfile
+  @Override
+  public void start(final Job job) {
+    this.job = job;
+    prop = job.getProperties();
+    lgK = Integer.parseInt(prop.mustGet("LgK"));
+    final String type = prop.mustGet("HLL_tgtHllType");
+    if (type.equalsIgnoreCase("HLL4")) { tgtHllType = TgtHllType.HLL_4; }
+    else if (type.equalsIgnoreCase("HLL6")) { tgtHllType = TgtHllType.HLL_6; }
+    else { tgtHllType = TgtHllType.HLL_8; }
+    lgT = Integer.parseInt(prop.mustGet("Trials_lgT"));
+    lgU = Integer.parseInt(prop.mustGet("Ingest_lgU"));
+    minThreads = Integer.parseInt(prop.mustGet("Ingest_minThreads"));
+    maxThreads = Integer.parseInt(prop.mustGet("Ingest_maxThreads"));
+    if (maxThreads <= 0) { maxThreads = Runtime.getRuntime().availableProcessors(); }
+    doTrials();
+    shutdown();
+    cleanup();
+  }
+
+  @Override
+  public void shutdown() {}
+
+  @Override
+  public void cleanup() {}
+  //end JobProfile
+
+  private void doTrials() {
+    final int trials = 1 << lgT;
+    final StringBuilder dataStr = new StringBuilder();
+    job.println(getHeader());
+    double baseUpdatesPerSec = 0;
+    for (int numThreads = minThreads; numThreads <= maxThreads; numThreads++) {
+      final int uPerThread = (1 << lgU) / numThreads;
+      final long totalU = (long) uPerThread * numThreads;
+      final HllSketch[] sketches = new HllSketch[numThreads];
+      for (int i = 0; i < numThreads; i++) { sketches[i] = new HllSketch(lgK, tgtHllType); }
+      final Union union = new Union(lgK);
+      final BarrierTestDriver driver = new BarrierTestDriver(numThreads);
+
+      System.gc();
+      long sumIngestTime_nS = 0;
+      long sumMergeTime_nS = 0;
+      double sumRelErr = 0;
+      double sumSqRelErr = 0;
+      for (int t = 0; t < trials; t++) {
+        for (int i = 0; i < numThreads; i++) { sketches[i].reset(); }
+        final long base = vIn;
+        vIn += totalU;
+
+        sumIngestTime_nS += driver.run(index -> {
+          final HllSketch sk = sketches[index];
+          final long start = base + ((long) index * uPerThread) + 1;
+          final long end = start + uPerThread;
+          for (long v = start; v < end; v++) {
+            sk.update(v);
+          }
+        });
+
+        final long startMergeTime_nS = System.nanoTime();
+        union.reset();
+        for (int i = 0; i < numThreads; i++) {
+          union.update(sketches[i]);
+        }
+        final HllSketch merged = union.getResult(tgtHllType);
+        sumMergeTime_nS += System.nanoTime() - startMergeTime_nS;
+
+        final double relErr = (merged.getEstimate() / totalU) - 1.0;
+        sumRelErr += relErr;
+        sumSqRelErr += relErr * relErr;
+      }
+      driver.shutdown();
+
+      final double ingestTimePerU_nS = (double) sumIngestTime_nS / trials / totalU;
+      final double updatesPerSec = 1E9 / ingestTimePerU_nS;
+      if (numThreads == minThreads) { baseUpdatesPerSec = updatesPerSec; }
+      final double mergeTime_nS = (double) sumMergeTime_nS / trials;
+
+      //OUTPUT
+      dataStr.setLength(0);
+      dataStr.append(numThreads).append(TAB);
+      dataStr.append(trials).append(TAB);
+      dataStr.append(totalU).append(TAB);
+      dataStr.append(ingestTimePerU_nS).append(TAB);
+      dataStr.append(updatesPerSec).append(TAB);
+      dataStr.append(updatesPerSec / baseUpdatesPerSec).append(TAB);
+      dataStr.append(mergeTime_nS).append(TAB);
+      dataStr.append(mergeTime_nS / numThreads).append(TAB);
+      dataStr.append(sumRelErr / trials).append(TAB);
+      dataStr.append(Math.sqrt(sumSqRelErr / trials));
+      job.println(dataStr.toString());
+    }
+  }
+
+  private static String getHeader() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("Threads").append(TAB);
+    sb.append("Trials").append(TAB);
+    sb.append("U").append(TAB);
+    sb.append("Ingest_nS/u").append(TAB);
+    sb.append("Updates/Sec").append(TAB);
+    sb.append("Speedup").append(TAB);
+    sb.append("Merge_nS").append(TAB);
+    sb.append("Merge_nS/Sketch").append(TAB);
+    sb.append("MeanRelErr").append(TAB);
+    sb.append("RmsRelErr");
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,381 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.hll.concurrent;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+
+import org.apache.datasketches.Job;
+import org.apache.datasketches.JobProfile;
+import org.apache.datasketches.Properties;
+import org.apache.datasketches.characterization.concurrent.PhasedTestContext;
+import org.apache.datasketches.hll.HllSketch;
+import org.apache.datasketches.hll.TgtHllType;
+import org.apache.datasketches.hll.Union;
+
+/**
+ * Compares four ways of sharing HLL sketches between concurrent writers and readers:
+ * <ul>
+ * <li>LOCK: one HllSketch behind a ReentrantReadWriteLock.</li>
+ * <li>STAMPED: one HllSketch behind a StampedLock. Readers try an optimistic read first and fall
+ * back to the read lock if a writer intervened.</li>
+ * <li>STRIPED: Concurrent_HLL_stripes sketches, each behind its own lock. A writer picks the stripe
+ * by the hash of its thread; a reader merges all stripes with a Union.</li>
+ * <li>THREAD_LOCAL: one sketch per writer, each behind its own, normally uncontended, lock.
+ * A reader merges all of them with a Union.</li>
+ * </ul>
+ *
+ * <p>For every total thread count in Sweep_threads and reader fraction in Sweep_readerFraction
+ * a row is output per strategy with the write throughput, the mean read latency, the bytes of
+ * all sketches and the relative error of the final estimate.</p>
+ */
+public class ConcurrentHllSpeedProfile implements JobProfile {
+  private Job job;
+  private Properties prop;
+  private long vIn = 0;
+  private int lgK;
+  private TgtHllType tgtHllType;
+  private int lgT;
+  private int lgU;
+  private int numStripes;
+  private long readInterval_nS;
+
+  //JobProfile
+  @Override
+  public void start(final Job job) {
+    this.job = job;
+    prop = job.getProperties();
+    lgK = Integer.parseInt(prop.mustGet("LgK"));
+    final String type = prop.mustGet("HLL_tgtHllType");
+    if (type.equalsIgnoreCase("HLL4")) { tgtHllType = TgtHllType.HLL_4; }
+    else if (type.equalsIgnoreCase("HLL6")) { tgtHllType = TgtHllType.HLL_6; }
+    else { tgtHllType = TgtHllType.HLL_8; }
+    lgT = Integer.parseInt(prop.mustGet("Trials_lgT"));
+    lgU = Integer.parseInt(prop.mustGet("Concurrent_HLL_lgU"));
+    numStripes = Integer.parseInt(prop.mustGet("Concurrent_HLL_stripes"));
+    readInterval_nS = Long.parseLong(prop.mustGet("Concurrent_HLL_readInterval_uS")) * 1000L;
+    doSweep();
+    shutdown();
+    cleanup();
+  }
+
+  @Override
+  public void shutdown() {}
+
+  @Override
+  public void cleanup() {}
+  //end JobProfile
+
+  private void doSweep() {
+    final String[] threads = prop.mustGet("Sweep_threads").split(",");
+    final String[] fractions = prop.mustGet("Sweep_readerFraction").split(",");
+    final String[] strategies = prop.mustGet("Sweep_strategy").split(",");
+    final StringBuilder dataStr = new StringBuilder();
+    job.println(getHeader());
+    for (int i = 0; i < threads.length; i++) {
+      final int numThreads = Integer.parseInt(threads[i].trim());
+      for (int j = 0; j < fractions.length; j++) {
+        final double fraction = Double.parseDouble(fractions[j].trim());
+        final int numReaders = Math.min((int) Math.round(numThreads * fraction), numThreads - 1);
+        final int numWriters = numThreads - numReaders;
+        for (int s = 0; s < strategies.length; s++) {
+          final String name = strategies[s].trim().toUpperCase();
+          doTrials(newStrategy(name, numWriters), name, numWriters, numReaders, dataStr);
+        }
+      }
+    }
+  }
+
+  private Strategy newStrategy(final String name, final int numWriters) {
+    switch (name) {
+      case "LOCK": return new LockStrategy();
+      case "STAMPED": return new StampedStrategy();
+      case "STRIPED": return new StripedStrategy(numStripes);
+      case "THREAD_LOCAL": return new StripedStrategy(numWriters);
+      default: throw new IllegalArgumentException("Unknown strategy: " + name);
+    }
+  }
+
+  private void doTrials(final Strategy strategy, final String name, final int numWriters,
+      final int numReaders, final StringBuilder dataStr) {
+    final PhasedTestContext ctx = new PhasedTestContext();
+    final WriterOp[] writers = new WriterOp[numWriters];
+    for (int w = 0; w < numWriters; w++) {
+      writers[w] = new WriterOp(strategy, w, numWriters, name.equals("THREAD_LOCAL"));
+      ctx.addWriterThread(writers[w]);
+    }
+    final ReaderOp[] readers = new ReaderOp[numReaders];
+    for (int r = 0; r < numReaders; r++) {
+      readers[r] = new ReaderOp(strategy);
+      ctx.addReaderThread(readers[r]);
+    }
+    ctx.startThreads();
+
+    final int trials = 1 << lgT;
+    final int uPerTrial = 1 << lgU;
+    long sumWriteTime_nS = 0;
+    long sumWrites = 0;
+    long sumReadTime_nS = 0;
+    long sumReads = 0;
+    double sumRelErr = 0;
+    for (int t = 0; t < trials; t++) {
+      strategy.reset();
+      for (final WriterOp writer : writers) { writer.reset(vIn); }
+      for (final ReaderOp reader : readers) { reader.reset(); }
+      vIn += uPerTrial;
+
+      ctx.doTrial(uPerTrial);
+      sumWriteTime_nS += ctx.getTotalTimeNS();
+      sumWrites += ctx.getNumWrites();
+      for (final ReaderOp reader : readers) {
+        sumReadTime_nS += reader.sumReadTime_nS;
+        sumReads += reader.numReads;
+      }
+      sumRelErr += (strategy.read(new Union(lgK)) / ctx.getNumWrites()) - 1.0;
+    }
+    ctx.stopAllThreads();
+
+    final double writeTimePerU_nS = (double) sumWriteTime_nS / sumWrites;
+
+    //OUTPUT
+    dataStr.setLength(0);
+    dataStr.append(name).append(TAB);
+    dataStr.append(numWriters).append(TAB);
+    dataStr.append(numReaders).append(TAB);
+    dataStr.append(trials).append(TAB);
+    dataStr.append(uPerTrial).append(TAB);
+    dataStr.append(writeTimePerU_nS).append(TAB);
+    dataStr.append(1E9 / writeTimePerU_nS).append(TAB);
+    dataStr.append(sumReads / trials).append(TAB);
+    dataStr.append(sumReads == 0 ? 0 : (double) sumReadTime_nS / sumReads).append(TAB);
+    dataStr.append(strategy.getBytes()).append(TAB);
+    dataStr.append(sumRelErr / trials);
+    job.println(dataStr.toString());
+  }
+
+  private static String getHeader() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("Strategy").append(TAB);
+    sb.append("Writers").append(TAB);
+    sb.append("Readers").append(TAB);
+    sb.append("Trials").append(TAB);
+    sb.append("U").append(TAB);
+    sb.append("Write_nS/u").append(TAB);
+    sb.append("Writes/Sec").append(TAB);
+    sb.append("Reads/Trial").append(TAB);
+    sb.append("Read_nS").append(TAB);
+    sb.append("Bytes").append(TAB);
+    sb.append("RelErr");
+    return sb.toString();
+  }
+
+  /**
+   * A way of sharing HLL sketches between writers and readers.
+   */
+  private abstract static class Strategy {
+    /**
+     * Updates the sketch selected by the given writer index, or by the writer's thread if negative.
+     */
+    abstract void update(int writerIndex, long v);
+
+    /**
+     * Returns the current estimate. The union is owned by the calling reader and may be reused.
+     */
+    abstract double read(Union union);
+
+    abstract void reset();
+
+    abstract int getBytes();
+  }
+
+  private final class LockStrategy extends Strategy {
+    private final HllSketch sketch = new HllSketch(lgK, tgtHllType);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Override
+    void update(final int writerIndex, final long v) {
+      lock.writeLock().lock();
+      try {
+        sketch.update(v);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    @Override
+    double read(final Union union) {
+      lock.readLock().lock();
+      try {
+        return sketch.getEstimate();
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    @Override
+    void reset() { sketch.reset(); }
+
+    @Override
+    int getBytes() { return sketch.getUpdatableSerializationBytes(); }
+  }
+
+  private final class StampedStrategy extends Strategy {
+    private final HllSketch sketch = new HllSketch(lgK, tgtHllType);
+    private final StampedLock lock = new StampedLock();
+
+    @Override
+    void update(final int writerIndex, final long v) {
+      final long stamp = lock.writeLock();
+      try {
+        sketch.update(v);
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    @Override
+    double read(final Union union) {
+      final long optimistic = lock.tryOptimisticRead();
+      if (optimistic != 0) {
+        try {
+          final double est = sketch.getEstimate();
+          if (lock.validate(optimistic)) { return est; }
+        } catch (final RuntimeException e) {
+          //a writer changed the sketch under the optimistic read, fall back to the read lock
+        }
+      }
+      final long stamp = lock.readLock();
+      try {
+        return sketch.getEstimate();
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    @Override
+    void reset() { sketch.reset(); }
+
+    @Override
+    int getBytes() { return sketch.getUpdatableSerializationBytes(); }
+  }
+
+  /**
+   * Used for both STRIPED and THREAD_LOCAL, which differ only in the number of sketches and in
+   * how a writer selects its sketch.
+   */
+  private final class StripedStrategy extends Strategy {
+    private final HllSketch[] sketches;
+
+    StripedStrategy(final int numSketches) {
+      sketches = new HllSketch[numSketches];
+      for (int i = 0; i < numSketches; i++) { sketches[i] = new HllSketch(lgK, tgtHllType); }
+    }
+
+    @Override
+    void update(final int writerIndex, final long v) {
+      final int index = (writerIndex >= 0)
+          ? writerIndex
+          : (spread(System.identityHashCode(Thread.currentThread())) & 0x7FFFFFFF) % sketches.length;
+      final HllSketch sketch = sketches[index];
+      synchronized (sketch) {
+        sketch.update(v);
+      }
+    }
+
+    @Override
+    double read(final Union union) {
+      union.reset();
+      for (final HllSketch sketch : sketches) {
+        synchronized (sketch) {
+          union.update(sketch);
+        }
+      }
+      return union.getEstimate();
+    }
+
+    @Override
+    void reset() {
+      for (final HllSketch sketch : sketches) { sketch.reset(); }
+    }
+
+    @Override
+    int getBytes() {
+      int bytes = 0;
+      for (final HllSketch sketch : sketches) { bytes += sketch.getUpdatableSerializationBytes(); }
+      return bytes;
+    }
+  }
+
+  private static int spread(final int h) {
+    return h ^ (h >>> 16);
+  }
+
+  private static final class WriterOp implements Runnable {
+    private final Strategy strategy;
+    private final int offset;
+    private final int jump;
+    private final int writerIndex;
+    private long i;
+
+    WriterOp(final Strategy strategy, final int offset, final int jump, final boolean threadLocal) {
+      this.strategy = strategy;
+      this.offset = offset;
+      this.jump = jump;
+      writerIndex = threadLocal ? offset : -1;
+    }
+
+    void reset(final long base) {
+      i = base + offset;
+    }
+
+    @Override
+    public void run() {
+      strategy.update(writerIndex, i);
+      i += jump;
+    }
+  }
+
+  private final class ReaderOp implements Runnable {
+    private final Strategy strategy;
+    private final Union union = new Union(lgK);
+    long sumReadTime_nS;
+    long numReads;
+
+    ReaderOp(final Strategy strategy) {
+      this.strategy = strategy;
+    }
+
+    void reset() {
+      sumReadTime_nS = 0;
+      numReads = 0;
+    }
+
+    @Override
+    public void run() {
+      final long startReadTime_nS = System.nanoTime();
+      strategy.read(union);
+      sumReadTime_nS += System.nanoTime() - startReadTime_nS;
+      numReads++;
+      if (readInterval_nS > 0) { LockSupport.parkNanos(readInterval_nS); }
+    }
+  }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.kll;
+
+import static java.lang.Math.round;
+import static org.apache.datasketches.common.Util.pwr2SeriesNext;
+import static org.apache.datasketches.quantilescommon.QuantileSearchCriteria.EXCLUSIVE;
+import static org.apache.datasketches.quantilescommon.QuantileSearchCriteria.INCLUSIVE;
+import static org.apache.datasketches.quantilescommon.QuantilesUtil.evenlySpacedDoubles;
+
+import org.apache.datasketches.Job;
+import org.apache.datasketches.JobProfile;
+import org.apache.datasketches.MonotonicPoints;
+import org.apache.datasketches.Properties;
+import org.apache.datasketches.kll.KllSketch;
+import org.apache.datasketches.kll.KllSketch.SketchType;
+import org.apache.datasketches.quantilescommon.QuantileSearchCriteria;
+
+/**
+ * The rank accuracy of a KLL sketch at evenly spaced plot points over a range of stream lengths.
+ * The stream of length SL is the values 1 to SL, shuffled for each trial. The trials are run by a
+ * KllRankAccuracyEngine on NumThreads worker threads (0 = number of available processors).
+ *
+ * @author Lee Rhodes
+ */
+public abstract class BaseKllRankGaussianAccuracyProfile implements JobProfile {
+  private Job job;
+  private Properties props;
+
+  //FROM PROPERTIES
+  //For computing the different stream lengths
+  private int lgMin;
+  private int lgMax;
+  private int lgDelta;
+  private int ppo; //not used for rank accuracy
+
+  private int numTrials; //num of Trials per plotPoint
+  private int errorSkLgK; //size of the error quantiles sketches
+  private int numThreads; //worker threads for the trials
+
+  //plotting & x-axis configuration
+  private int numPlotPoints;
+
+  //Target sketch configuration & error analysis
+  private int k;
+  private QuantileSearchCriteria criteria;
+  private boolean useBulk;
+  private boolean direct;
+
+  //DERIVED globals
+  private KllRankAccuracyEngine engine;
+  private int trueValueCorrection;
+
+  private final String[] columnLabels =
+    {"nPP", "Value", "Rank", "-3SD","-2SD", "-1SD", "Med", "+1SD", "+2SD", "+3SD"};
+  private final String sFmt =
+    "%3s\t%5s\t%4s\t%4s\t%4s\t%4s\t%5s\t%4s\t%4s\t%4s\n";
+  private final String fFmt =
+    "%14.10f\t%14.0f\t%14.10f\t" //rPP, Value, Rank
+  + "%14.10f\t%14.10f\t%14.10f\t%14.10f\t%14.10f\t%14.10f\t%14.10f\t\n"; //-3sd to +3sd
+
+  /**
+   * Returns the type of the sketch under test.
+   * @return the type of the sketch under test
+   */
+  abstract SketchType getSketchType();
+
+  //JobProfile interface
+  @Override
+  public void start(final Job job) {
+    this.job = job;
+    this.props = job.getProperties();
+    extractProperties();
+    trueValueCorrection = (criteria == EXCLUSIVE) ? 1 : 0;
+    engine = new KllRankAccuracyEngine(getSketchType(), k, direct, criteria, useBulk, errorSkLgK,
+        numThreads);
+    doJob();
+    shutdown();
+    cleanup();
+  }
+
+  @Override
+  public void shutdown() {}
+
+  @Override
+  public void cleanup() {
+    engine.shutdown();
+  }
+  //end JobProfile
+
+  private void extractProperties() {
+    //stream length
+    lgMin = Integer.parseInt(props.mustGet("LgMin"));
+    lgMax = Integer.parseInt(props.mustGet("LgMax"));
+    lgDelta = Integer.parseInt(props.mustGet("LgDelta"));
+    ppo = Integer.parseInt(props.mustGet("PPO"));
+    //numTrials & error quantiles sketch config
+    numTrials = 1 << Integer.parseInt(props.mustGet("LgTrials"));
+    errorSkLgK = Integer.parseInt(props.mustGet("ErrSkLgK"));
+    numThreads = Integer.parseInt(props.mustGet("NumThreads"));
+    //plotting & x-axis config
+    numPlotPoints = Integer.parseInt(props.mustGet("NumPlotPoints"));
+    //Target sketch config
+    k = Integer.parseInt(props.mustGet("K"));
+    criteria = props.mustGet("criteria").equalsIgnoreCase("INCLUSIVE") ? INCLUSIVE : EXCLUSIVE;
+    useBulk = Boolean.parseBoolean(props.mustGet("useBulk"));
+    direct = Boolean.parseBoolean(props.mustGet("direct"));
+  }
+
+  private void doJob() {
+    //compute the number of stream lengths for the whole job
+    final int numSteps;
+    final boolean useppo;
+    if (lgDelta < 1) {
+      numSteps = MonotonicPoints.countPoints(lgMin, lgMax, ppo);
+      useppo = true;
+    } else {
+      numSteps = (lgMax - lgMin) / lgDelta + 1;
+      useppo = false;
+    }
+
+    int streamLength = 1 << lgMin; //initial streamLength
+    int lgCurSL = lgMin;
+
+    // Step through the different stream lengths
+    for (int step = 0; step < numSteps; step++) {
+      doStreamLength(streamLength);
+      //go to next stream length
+      if (useppo) {
+        streamLength = (int)pwr2SeriesNext(ppo, streamLength);
+      } else {
+        lgCurSL += lgDelta;
+        streamLength = 1 << lgCurSL;
+      }
+    }
+  }
+
+  void doStreamLength(final int streamLength) {
+    job.println(LS + "Stream Length: " + streamLength );
+    job.println("Epsilon: " + KllSketch.getNormalizedRankError(k, false));
+    job.printfData(sFmt, (Object[])columnLabels);
+
+    //build the stream
+    final double[] stream = new double[streamLength];
+    for (int sl = 1; sl <= streamLength; sl++) { stream[sl - 1] = sl; } //1 to SL
+    engine.setStream(stream, 1, false);
+
+    //compute the true values used at the plot points
+    final double start = 1.0;
+    final double end = streamLength;
+    //approxDblNatRanks are designed to be their natural ranks starting with 1
+    final double[] approxDblNatRanks = evenlySpacedDoubles(start, end, numPlotPoints);
+    final double[] trueNaturalRanks = new double[numPlotPoints];
+    final double[] trueNormRanks = new double[numPlotPoints];
+    for (int pp = 0; pp < numPlotPoints; pp++) {
+      trueNaturalRanks[pp] = round(approxDblNatRanks[pp]); //force nearest integer
+      //minus: exclusive = 1, inclusive = 0
+      trueNormRanks[pp] = (trueNaturalRanks[pp] - trueValueCorrection) / streamLength;
+    }
+    engine.setPoints(trueNaturalRanks, trueNormRanks);
+
+    //Do numTrials for all plot points
+    final double[][] errQArr = engine.runTrials(numTrials);
+
+    //at this point each of the plot points has a distribution of error from numTrials
+    for (int pp = 0 ; pp < numPlotPoints; pp++) {
+      final double trueNatRank = trueNaturalRanks[pp];
+      final double trueNormalizedRank = trueNatRank / streamLength; //create the true normalized rank
+      final double[] errQ = errQArr[pp]; //error values at the Gaussian ranks
+
+      //Plot the row. We ignore quantiles collected at 0 and 1.0.
+      final double relPP = (double)(pp + 1) / numPlotPoints;
+      job.printfData(fFmt, relPP, trueNatRank, trueNormalizedRank,
+          errQ[0], errQ[1], errQ[2], errQ[3], errQ[4], errQ[5], errQ[6]);
+    }
+    job.println(LS + "Serialization Bytes: " + engine.getSketch().getSerializedSizeBytes());
+  }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.kll;
+
+import static org.apache.datasketches.quantilescommon.QuantileSearchCriteria.EXCLUSIVE;
+import static org.apache.datasketches.quantilescommon.QuantileSearchCriteria.INCLUSIVE;
+
+import org.apache.datasketches.Job;
+import org.apache.datasketches.JobProfile;
+import org.apache.datasketches.Properties;
+import org.apache.datasketches.kll.KllSketch.SketchType;
+import org.apache.datasketches.quantilescommon.QuantileSearchCriteria;
+
+/**
+ * The rank accuracy of a KLL sketch for a stream of 2^LgNumSteps distinct values, each of which is
+ * in the stream 2^LgStepSize times, given either as weighted or as single updates. The trials are
+ * run by a KllRankAccuracyEngine on NumThreads worker threads (0 = number of available processors).
+ *
+ * @author Lee Rhodes
+ */
+public abstract class BaseKllWeightedRankGaussianAccuracyProfile implements JobProfile {
+  private static final String[] columnLabels =
+    {"Row", "Quantile", "NormRank", "-3SD","-2SD", "-1SD", "Med", "+1SD", "+2SD", "+3SD"};
+  private static final String sFmt =
+    "%3s\t%8s\t%8s\t%4s\t%4s\t%4s\t%4s\t%4s\t%4s\t%4s\n";
+  private static final String fFmt =
+    "%5d\t%14.0f\t%14.10f\t" //rPP, Value, NormRank
+  + "%14.10f\t%14.10f\t%14.10f\t%14.10f\t%14.10f\t%14.10f\t%14.10f\n"; //-3sd to +3sd
+  private static final String fFmtItems =
+    "%5d\t%14s\t%14.10f\t" //rPP, Value, NormRank
+  + "%14.10f\t%14.10f\t%14.10f\t%14.10f\t%14.10f\t%14.10f\t%14.10f\n"; //-3sd to +3sd
+
+  private Job job;
+  private Properties props;
+
+  //PROPERTIES to be derived from config file
+  //Trial parameters
+  private int numTrials; //num of Trials per plotPoint
+  private int errorSkLgK; //size of the error quantiles sketches
+  private int numThreads; //worker threads for the trials
+
+  //Target sketch configuration & error analysis
+  private int k;
+  private QuantileSearchCriteria criteria;
+  private boolean direct; //not used by the Items sketch
+  private boolean weightedUpdate; //For determining the update method
+  //END FROM PROPERTIES
+
+  //DERIVED
+  private KllRankAccuracyEngine engine;
+  private int numSteps;
+  private int stepSize;
+  private int streamLen;
+
+  /**
+   * Returns the type of the sketch under test.
+   * @return the type of the sketch under test
+   */
+  abstract SketchType getSketchType();
+
+  @Override
+  public void start(final Job job) {
+    this.job = job;
+    this.props = job.getProperties();
+    extractProperties();
+    engine = new KllRankAccuracyEngine(getSketchType(), k, direct, criteria, false, errorSkLgK,
+        numThreads);
+    doTrials();
+    shutdown();
+    cleanup();
+  }
+
+  private void extractProperties() {
+    final int lgStepSize = Integer.parseInt(props.mustGet("LgStepSize"));
+    stepSize = 1 << lgStepSize;
+    final int lgNumSteps = Integer.parseInt(props.mustGet("LgNumSteps"));
+    numSteps = 1 << lgNumSteps;
+    streamLen = 1 << (lgStepSize + lgNumSteps);
+
+    //numTrials & error quantiles sketch config
+    numTrials = 1 << Integer.parseInt(props.mustGet("LgTrials"));
+    errorSkLgK = Integer.parseInt(props.mustGet("ErrSkLgK"));
+    numThreads = Integer.parseInt(props.mustGet("NumThreads"));
+
+    //Target sketch config
+    k = Integer.parseInt(props.mustGet("K"));
+    criteria = props.mustGet("Criteria").equalsIgnoreCase("INCLUSIVE") ? INCLUSIVE : EXCLUSIVE;
+    direct = Boolean.parseBoolean(props.mustGet("Direct"));
+    weightedUpdate = Boolean.parseBoolean(props.mustGet("WeightedUpdate"));
+  }
+
+  void doTrials() {
+    //the values are monotonic, each with a weight of stepSize
+    final long adjRank = (criteria == EXCLUSIVE) ? stepSize : 0;
+    final double[] quantiles = new double[numSteps];
+    final double[] normRanks = new double[numSteps];
+    for (int i = 0; i < numSteps; i++) {
+      quantiles[i] = stepSize * (i + 1);
+      final long naturalRank = (long)quantiles[i];
+      normRanks[i] = (naturalRank - adjRank) / (double) streamLen;
+    }
+    engine.setStream(quantiles, stepSize, weightedUpdate);
+    engine.setPoints(quantiles, normRanks);
+
+    job.println("");
+    job.printfData(sFmt, (Object[])columnLabels);
+
+    //Do numTrials for all plot points
+    final double[][] errQArr = engine.runTrials(numTrials);
+
+    //at this point each of the steps has a distribution of error from the trials
+    final boolean items = getSketchType() == SketchType.ITEMS_SKETCH;
+    for (int i = 0 ; i < numSteps; i++) {
+      final double[] errQ = errQArr[i]; //error values at the Gaussian ranks
+
+      //Plot the row. We ignore quantiles collected at 0 and 1.0.
+      final int numPP = i + 1;
+      job.printfData(items ? fFmtItems : fFmt, numPP,
+          items ? engine.toString(quantiles[i]) : quantiles[i], normRanks[i],
+          errQ[0], errQ[1], errQ[2], errQ[3], errQ[4], errQ[5], errQ[6]);
+    }
+
+    job.println(engine.getSketch().toString(true, false));
+  }
+
+  @Override
+  public void shutdown() {}
+
+  @Override
+  public void cleanup() {
+    engine.shutdown();
+  }
+
+}
@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.kll;
+
+import static java.lang.Math.log;
+import static java.lang.Math.pow;
+import static org.apache.datasketches.common.Util.pwr2SeriesNext;
+import static org.apache.datasketches.kll.KllSketch.SketchType.DOUBLES_SKETCH;
+import static org.apache.datasketches.kll.KllSketch.SketchType.FLOATS_SKETCH;
+
+import org.apache.datasketches.Job;
+import org.apache.datasketches.JobProfile;
+import org.apache.datasketches.Properties;
+import org.apache.datasketches.characterization.CountingMemoryRequestServer;
+import org.apache.datasketches.characterization.MemoryRequestCounter.Strategy;
+import org.apache.datasketches.kll.KllDoublesSketch;
+import org.apache.datasketches.kll.KllFloatsSketch;
+import org.apache.datasketches.kll.KllSketch;
+import org.apache.datasketches.memory.WritableMemory;
+
+/**
+ * Memory growth of direct KLL sketches versus stream length.
+ *
+ * <p>For each stream length every trial builds a new direct sketch on InitialBytes of memory
+ * (0 = the size of an empty sketch) from a CountingMemoryRequestServer and updates it with the
+ * stream. A row is output for each strategy in the list Sweep_strategy (HEAP, DIRECT, POOLED) with
+ * the per trial means of the number of memory requests, the bytes requested, the bytes of the
+ * memories replaced, the POOLED requests served from the pool, the time spent in the requests and
+ * the copy time, which is the time from the end of a request to the end of the update that caused
+ * it. The update time is compared with that of a heap sketch built the same way. The POOLED
+ * server is kept for the whole sweep, so its pool is warm after the first trial.</p>
+ *
+ * <p>This profile is not built for Java 17. With memory 4.1.0 the MemoryRequestServer interface
+ * takes a jdk.incubator.foreign.ResourceScope, and compiling against that incubating module would
+ * make every Java 17 build warn, so the Java 17 build leaves out this profile, its conf and the
+ * counting server.</p>
+ */
+public class KllMemoryGrowthProfile implements JobProfile {
+  private Job job;
+  private Properties prop;
+
+  //FROM PROPERTIES
+  private int lgMinT;
+  private int lgMaxT;
+  private int lgMinBpSL;
+  private int lgMaxBpSL;
+  private int lgMinSL;
+  private int lgMaxSL;
+  private int ppoSL;
+  private int k;
+  private boolean useDouble;
+  private int initialBytes;
+
+  //DERIVED & GLOBALS
+  private double slope;
+  private long copyTime_nS;
+
+  //JobProfile
+  @Override
+  public void start(final Job job) {
+    this.job = job;
+    prop = job.getProperties();
+    lgMinT = Integer.parseInt(prop.mustGet("LgMinT"));
+    lgMaxT = Integer.parseInt(prop.mustGet("LgMaxT"));
+    lgMinBpSL = Integer.parseInt(prop.mustGet("LgMinBpSL"));
+    lgMaxBpSL = Integer.parseInt(prop.mustGet("LgMaxBpSL"));
+    lgMinSL = Integer.parseInt(prop.mustGet("LgMinSL"));
+    lgMaxSL = Integer.parseInt(prop.mustGet("LgMaxSL"));
+    ppoSL = Integer.parseInt(prop.mustGet("PpoSL"));
+    k = Integer.parseInt(prop.mustGet("KllK"));
+    useDouble = prop.mustGet("type").equalsIgnoreCase("double");
+    initialBytes = Integer.parseInt(prop.mustGet("InitialBytes"));
+    if (initialBytes <= 0) {
+      initialBytes = KllSketch.getMaxSerializedSizeBytes(k, 0, useDouble ? DOUBLES_SKETCH : FLOATS_SKETCH, true);
+    }
+    slope = (double) (lgMaxT - lgMinT) / (lgMinBpSL - lgMaxBpSL);
+    doSweep();
+    shutdown();
+    cleanup();
+  }
+
+  @Override
+  public void shutdown() {}
+
+  @Override
+  public void cleanup() {}
+  //end JobProfile
+
+  private void doSweep() {
+    final String[] strategies = prop.mustGet("Sweep_strategy").split(",");
+    final CountingMemoryRequestServer[] servers = new CountingMemoryRequestServer[strategies.length];
+    for (int s = 0; s < strategies.length; s++) {
+      servers[s] = new CountingMemoryRequestServer(Strategy.valueOf(strategies[s].trim().toUpperCase()));
+    }
+    //never asked for memory, it only gives the heap trials the same update loop
+    final CountingMemoryRequestServer heapServer = new CountingMemoryRequestServer(Strategy.HEAP);
+    final StringBuilder dataStr = new StringBuilder();
+    job.println(getHeader());
+    final int maxSL = 1 << lgMaxSL;
+    int streamLen = 0;
+    while (streamLen < maxSL) {
+      streamLen = streamLen == 0 ? 1 << lgMinSL : (int) pwr2SeriesNext(ppoSL, streamLen);
+      final int trials = getNumTrials(streamLen);
+      doTrials(heapServer, false, streamLen, trials); //warm up
+      final double heapUpdateTime_nS = (double) doTrials(heapServer, false, streamLen, trials) / trials / streamLen;
+      for (int s = 0; s < servers.length; s++) {
+        final CountingMemoryRequestServer server = servers[s];
+        server.resetCounts();
+        copyTime_nS = 0;
+        final long updateTime_nS = doTrials(server, true, streamLen, trials);
+        final double updateTimePerU_nS = (double) updateTime_nS / trials / streamLen;
+
+        //OUTPUT
+        dataStr.setLength(0);
+        dataStr.append(streamLen).append(TAB);
+        dataStr.append(trials).append(TAB);
+        dataStr.append(server.getStrategy()).append(TAB);
+        dataStr.append((double) server.getNumRequests() / trials).append(TAB);
+        dataStr.append((double) server.getRequestedBytes() / trials).append(TAB);
+        dataStr.append((double) server.getReplacedBytes() / trials).append(TAB);
+        dataStr.append((double) server.getPoolHits() / trials).append(TAB);
+        dataStr.append((double) server.getRequestTime_nS() / trials).append(TAB);
+        dataStr.append((double) copyTime_nS / trials).append(TAB);
+        dataStr.append(updateTimePerU_nS).append(TAB);
+        dataStr.append(heapUpdateTime_nS).append(TAB);
+        dataStr.append(updateTimePerU_nS - heapUpdateTime_nS);
+        job.println(dataStr.toString());
+      }
+    }
+    for (int s = 0; s < servers.length; s++) { servers[s].close(); }
+  }
+
+  /**
+   * Builds and updates a new sketch per trial.
+   * @param server the server of the direct sketches
+   * @param direct true for direct sketches, otherwise heap sketches
+   * @param streamLen the stream length
+   * @param trials the number of trials
+   * @return the sum of the update times of all trials
+   */
+  private long doTrials(final CountingMemoryRequestServer server, final boolean direct, final int streamLen,
+      final int trials) {
+    long sumUpdateTime_nS = 0;
+    for (int t = 0; t < trials; t++) {
+      final WritableMemory wmem = direct ? server.allocate(initialBytes) : null;
+      if (useDouble) {
+        final KllDoublesSketch sk = direct
+            ? KllDoublesSketch.newDirectInstance(k, wmem, server)
+            : KllDoublesSketch.newHeapInstance(k);
+        sumUpdateTime_nS += updateDoubles(sk, streamLen, server);
+        checkN(sk, streamLen);
+      } else {
+        final KllFloatsSketch sk = direct
+            ? KllFloatsSketch.newDirectInstance(k, wmem, server)
+            : KllFloatsSketch.newHeapInstance(k);
+        sumUpdateTime_nS += updateFloats(sk, streamLen, server);
+        checkN(sk, streamLen);
+      }
+      if (direct) { server.release(); }
+    }
+    return sumUpdateTime_nS;
+  }
+
+  private long updateDoubles(final KllDoublesSketch sk, final int streamLen,
+      final CountingMemoryRequestServer server) {
+    long numRequests = server.getNumRequests();
+    final long startUpdateTime_nS = System.nanoTime();
+    for (int i = 0; i < streamLen; i++) {
+      sk.update(i);
+      if (server.getNumRequests() != numRequests) {
+        copyTime_nS += System.nanoTime() - server.getLastRequestEnd_nS();
+        numRequests = server.getNumRequests();
+      }
+    }
+    return System.nanoTime() - startUpdateTime_nS;
+  }
+
+  private long updateFloats(final KllFloatsSketch sk, final int streamLen,
+      final CountingMemoryRequestServer server) {
+    long numRequests = server.getNumRequests();
+    final long startUpdateTime_nS = System.nanoTime();
+    for (int i = 0; i < streamLen; i++) {
+      sk.update(i);
+      if (server.getNumRequests() != numRequests) {
+        copyTime_nS += System.nanoTime() - server.getLastRequestEnd_nS();
+        numRequests = server.getNumRequests();
+      }
+    }
+    return System.nanoTime() - startUpdateTime_nS;
+  }
+
+  private static void checkN(final KllSketch sk, final int streamLen) {
+    if (sk.getN() != streamLen) {
+      throw new IllegalStateException("Sketch N = " + sk.getN() + " != stream length " + streamLen);
+    }
+  }
+
+  /**
+   * Computes the number of trials for a given current stream length for a
+   * trial set. This is used in speed trials and decreases the number of trials
+   * as the stream length increases.
+   *
+   * @param curSL the given current stream length for a trial set.
+   * @return the number of trials for a given current stream length for a
+   * trial set.
+   */
+  private int getNumTrials(final int curSL) {
+    final int minBpSL = 1 << lgMinBpSL;
+    final int maxBpSL = 1 << lgMaxBpSL;
+    final int maxT = 1 << lgMaxT;
+    final int minT = 1 << lgMinT;
+    if (lgMinT == lgMaxT || curSL <= minBpSL) {
+      return maxT;
+    }
+    if (curSL >= maxBpSL) {
+      return minT;
+    }
+    final double lgCurU = log(curSL) / LN2;
+    final double lgTrials = slope * (lgCurU - lgMinBpSL) + lgMaxT;
+    return (int) pow(2.0, lgTrials);
+  }
+
+  private static String getHeader() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("StrLen").append(TAB);
+    sb.append("Trials").append(TAB);
+    sb.append("Strategy").append(TAB);
+    sb.append("Requests").append(TAB);
+    sb.append("Requested_B").append(TAB);
+    sb.append("Replaced_B").append(TAB);
+    sb.append("PoolHits").append(TAB);
+    sb.append("Request_nS").append(TAB);
+    sb.append("Copy_nS").append(TAB);
+    sb.append("Update_nS/u").append(TAB);
+    sb.append("Heap_nS/u").append(TAB);
+    sb.append("Overhead_nS/u");
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.kll;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.datasketches.Properties;
+import org.apache.datasketches.characterization.quantiles.BaseQuantilesSpeedProfile;
+import org.apache.datasketches.common.ArrayOfStringsSerDe;
+import org.apache.datasketches.kll.KllDoublesSketch;
+import org.apache.datasketches.kll.KllFloatsSketch;
+import org.apache.datasketches.kll.KllItemsSketch;
+import org.apache.datasketches.kll.KllSketch;
+import org.apache.datasketches.memory.DefaultMemoryRequestServer;
+import org.apache.datasketches.memory.WritableMemory;
+
+/**
+ * Sprays a stream across numSketches KLL sketches and times merging them into one sketch, as
+ * ReqMergeSpeedProfile does for the REQ sketch.
+ *
+ * <p>sketchType is DOUBLES, FLOATS or ITEMS (KllItemsSketch of Strings). With direct=true the
+ * DOUBLES and FLOATS sketches, including the merge targets, are created with newDirectInstance().</p>
+ *
+ * <p>For each thread count in the list mergeThreads (0 = number of available processors) the
+ * sketches are also merged by a binary tree of fork-join tasks on a pool of that many threads,
+ * which is appended as a column.</p>
+ */
+public class KllMergeSpeedProfile extends BaseQuantilesSpeedProfile {
+
+  private static final Random rnd = new Random();
+  private static final DefaultMemoryRequestServer memReqSvr = new DefaultMemoryRequestServer();
+  private int k;
+  private int numSketches;
+  private String sketchType;
+  private boolean direct;
+  private final ArrayOfStringsSerDe serDe = new ArrayOfStringsSerDe();
+  private double[] doubleValues;
+  private float[] floatValues;
+  private String[] itemValues;
+  private KllSketch[] sketches;
+  private int[] mergeThreads;
+  private ForkJoinPool[] pools;
+
+  long buildTimeNs;
+  long updateTimeNs;
+  long mergeTimeNs;
+  long numRetainedItems;
+  long[] treeMergeTimeNs;
+
+  @Override
+  public void configure(final int k, final int numQueryValues, final Properties properties) {
+    this.k = k;
+    numSketches = Integer.parseInt(properties.mustGet("numSketches"));
+    sketchType = properties.mustGet("sketchType").trim().toUpperCase();
+    direct = Boolean.parseBoolean(properties.mustGet("direct"));
+    if (!sketchType.equals("DOUBLES") && !sketchType.equals("FLOATS") && !sketchType.equals("ITEMS")) {
+      throw new IllegalArgumentException("Unknown sketchType: " + sketchType);
+    }
+    if (direct && sketchType.equals("ITEMS")) {
+      throw new IllegalArgumentException("KllItemsSketch has no direct instance.");
+    }
+    sketches = new KllSketch[numSketches];
+    final String[] threads = properties.mustGet("mergeThreads").split(",");
+    mergeThreads = new int[threads.length];
+    pools = new ForkJoinPool[threads.length];
+    for (int i = 0; i < threads.length; i++) {
+      final int t = Integer.parseInt(threads[i].trim());
+      mergeThreads[i] = t <= 0 ? Runtime.getRuntime().availableProcessors() : t;
+      pools[i] = new ForkJoinPool(mergeThreads[i]);
+    }
+    treeMergeTimeNs = new long[threads.length];
+  }
+
+  @Override
+  public void prepareTrial(final int streamLength) {
+    // prepare input data
+    if (sketchType.equals("DOUBLES")) {
+      doubleValues = new double[streamLength];
+      for (int i = 0; i < streamLength; i++) { doubleValues[i] = rnd.nextDouble(); }
+    } else if (sketchType.equals("FLOATS")) {
+      floatValues = new float[streamLength];
+      for (int i = 0; i < streamLength; i++) { floatValues[i] = rnd.nextFloat(); }
+    } else {
+      itemValues = new String[streamLength];
+      for (int i = 0; i < streamLength; i++) { itemValues[i] = Integer.toString(rnd.nextInt()); }
+    }
+    resetStats();
+  }
+
+  @Override
+  public void doTrial() {
+    final long startBuild = System.nanoTime();
+    for (int i = 0; i < numSketches; i++) {
+      sketches[i] = newSketch();
+    }
+    final long stopBuild = System.nanoTime();
+    buildTimeNs += stopBuild - startBuild;
+
+    final long startUpdate = System.nanoTime();
+    spray();
+    final long stopUpdate = System.nanoTime();
+    updateTimeNs += stopUpdate - startUpdate;
+
+    final KllSketch mergedSketch = newSketch();
+    final long startMerge = System.nanoTime();
+    for (int i = 0; i < numSketches; i++) {
+      mergedSketch.merge(sketches[i]);
+    }
+    final long stopMerge = System.nanoTime();
+    mergeTimeNs += stopMerge - startMerge;
+
+    for (int i = 0; i < pools.length; i++) {
+      final long startTreeMerge = System.nanoTime();
+      pools[i].invoke(new MergeTask(0, numSketches));
+      treeMergeTimeNs[i] += System.nanoTime() - startTreeMerge;
+    }
+
+    // record the last one since they must be the same
+    // but let's average across all trials to see if there is an anomaly
+    numRetainedItems += mergedSketch.getNumRetained();
+  }
+
+  private KllSketch newSketch() {
+    switch (sketchType) {
+      case "DOUBLES": return direct
+          ? KllDoublesSketch.newDirectInstance(k, WritableMemory.allocate(10000), memReqSvr)
+          : KllDoublesSketch.newHeapInstance(k);
+      case "FLOATS": return direct
+          ? KllFloatsSketch.newDirectInstance(k, WritableMemory.allocate(10000), memReqSvr)
+          : KllFloatsSketch.newHeapInstance(k);
+      default: return KllItemsSketch.newHeapInstance(k, Comparator.naturalOrder(), serDe);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void spray() { // spray values across all sketches
+    int i = 0;
+    if (sketchType.equals("DOUBLES")) {
+      for (int j = 0; j < doubleValues.length; j++) {
+        ((KllDoublesSketch) sketches[i++]).update(doubleValues[j]);
+        if (i == numSketches) { i = 0; }
+      }
+    } else if (sketchType.equals("FLOATS")) {
+      for (int j = 0; j < floatValues.length; j++) {
+        ((KllFloatsSketch) sketches[i++]).update(floatValues[j]);
+        if (i == numSketches) { i = 0; }
+      }
+    } else {
+      for (int j = 0; j < itemValues.length; j++) {
+        ((KllItemsSketch<String>) sketches[i++]).update(itemValues[j]);
+        if (i == numSketches) { i = 0; }
+      }
+    }
+  }
+
+  /**
+   * Merges the sketches lo to hi - 1 into a new sketch by merging the results of the two halves.
+   */
+  private final class MergeTask extends RecursiveTask<KllSketch> {
+    private static final long serialVersionUID = 1L;
+    private final int lo;
+    private final int hi;
+
+    MergeTask(final int lo, final int hi) {
+      this.lo = lo;
+      this.hi = hi;
+    }
+
+    @Override
+    protected KllSketch compute() {
+      if ((hi - lo) <= 2) {
+        final KllSketch result = newSketch();
+        for (int i = lo; i < hi; i++) { result.merge(sketches[i]); }
+        return result;
+      }
+      final int mid = (lo + hi) >>> 1;
+      final MergeTask left = new MergeTask(lo, mid);
+      left.fork();
+      final KllSketch result = new MergeTask(mid, hi).compute();
+      result.merge(left.join());
+      return result;
+    }
+  }
+
+  @Override
+  public String getHeader() {
+    final StringBuilder sb = new StringBuilder("Stream\tTrials\tBuild\tUpdate\tMerge\tMerge/Sketch\tItems");
+    for (int i = 0; i < mergeThreads.length; i++) {
+      sb.append("\tTreeMerge_T").append(mergeThreads[i]);
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public String getStats(final int streamLength, final int numTrials, final int numQueryValues) {
+    final StringBuilder sb = new StringBuilder(String.format("%d\t%d\t%.1f\t%.1f\t%.1f\t%.1f\t%d",
+      streamLength,
+      numTrials,
+      (double) buildTimeNs / numTrials,
+      (double) updateTimeNs / numTrials / streamLength,
+      (double) mergeTimeNs / numTrials,
+      (double) mergeTimeNs / numTrials / numSketches,
+      numRetainedItems / numTrials
+    ));
+    for (int i = 0; i < treeMergeTimeNs.length; i++) {
+      sb.append(String.format("\t%.1f", (double) treeMergeTimeNs[i] / numTrials));
+    }
+    return sb.toString();
+  }
+
+  private void resetStats() {
+    buildTimeNs = 0;
+    updateTimeNs = 0;
+    mergeTimeNs = 0;
+    numRetainedItems = 0;
+    for (int i = 0; i < treeMergeTimeNs.length; i++) { treeMergeTimeNs[i] = 0; }
+  }
+
+}
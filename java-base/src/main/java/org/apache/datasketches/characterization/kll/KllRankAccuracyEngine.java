@@ -0,0 +1,314 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.kll;
+
+import static org.apache.datasketches.GaussianRanks.GAUSSIANS_3SD;
+import static org.apache.datasketches.common.Util.longToFixedLengthString;
+import static org.apache.datasketches.common.Util.numDigits;
+
+import java.util.Comparator;
+import java.util.Random;
+
+import org.apache.datasketches.characterization.Shuffle;
+import org.apache.datasketches.characterization.concurrent.BarrierTestDriver;
+import org.apache.datasketches.common.ArrayOfStringsSerDe;
+import org.apache.datasketches.kll.KllDoublesSketch;
+import org.apache.datasketches.kll.KllFloatsSketch;
+import org.apache.datasketches.kll.KllItemsSketch;
+import org.apache.datasketches.kll.KllSketch;
+import org.apache.datasketches.kll.KllSketch.SketchType;
+import org.apache.datasketches.memory.DefaultMemoryRequestServer;
+import org.apache.datasketches.memory.WritableMemory;
+import org.apache.datasketches.quantiles.DoublesSketch;
+import org.apache.datasketches.quantiles.DoublesSketchBuilder;
+import org.apache.datasketches.quantiles.DoublesUnion;
+import org.apache.datasketches.quantiles.UpdateDoublesSketch;
+import org.apache.datasketches.quantilescommon.QuantileSearchCriteria;
+
+/**
+ * The trial engine of the KLL rank Gaussian accuracy profiles, for the Doubles, Floats and Items
+ * sketches.
+ *
+ * <p>The stream is given as distinct values, integers &ge; 1, each of which is in the stream the
+ * same number of times, given to the sketch either as repeated single updates or as one weighted
+ * update. The Items sketch gets the values as fixed length strings, which sort in the same order.
+ * A trial resets a sketch, updates it with the values in a new random order and records the error
+ * of the estimated normalized rank of each query point in that point's error sketch.</p>
+ *
+ * <p>The trials are spread over numThreads workers. Each worker has its own sketch, its own
+ * permutation of the values and its own shard of the error sketches, while the values, the query
+ * points and their true ranks are shared read-only. The shards are merged with a DoublesUnion when
+ * the trials are done, except that a single worker's error sketches are used as is.</p>
+ */
+final class KllRankAccuracyEngine {
+  private static final DefaultMemoryRequestServer memReqSvr = new DefaultMemoryRequestServer();
+  private final SketchType sketchType;
+  private final int k;
+  private final boolean direct;
+  private final QuantileSearchCriteria criteria;
+  private final boolean useBulk;
+  private final int errorSkLgK;
+  private final int numThreads;
+  private final double[] gRanks;
+  private final ArrayOfStringsSerDe serDe = new ArrayOfStringsSerDe();
+  private final Worker[] workers;
+  private final BarrierTestDriver driver;
+
+  //shared by the workers, read-only during the trials
+  private double[] values;
+  private String[] strValues;
+  private int valueDigits;
+  private long weight;
+  private boolean weightedUpdate;
+  private double[] points;
+  private float[] floatPoints;
+  private String[] strPoints;
+  private double[] trueNormRanks;
+
+  /**
+   * Constructs the engine and its workers.
+   * @param sketchType the type of the sketches under test
+   * @param k the parameter k of the sketches under test
+   * @param direct if true, the Doubles and Floats sketches are direct, ignored for the Items sketch
+   * @param criteria the search criteria of the rank queries
+   * @param useBulk if true, query the ranks with getRanks(), otherwise with getRank() per point
+   * @param errorSkLgK the lgK of the error sketches
+   * @param numThreads the number of workers, 0 = number of available processors
+   */
+  KllRankAccuracyEngine(final SketchType sketchType, final int k, final boolean direct,
+      final QuantileSearchCriteria criteria, final boolean useBulk, final int errorSkLgK,
+      final int numThreads) {
+    this.sketchType = sketchType;
+    this.k = k;
+    this.direct = direct;
+    this.criteria = criteria;
+    this.useBulk = useBulk;
+    this.errorSkLgK = errorSkLgK;
+    this.numThreads = numThreads <= 0 ? Runtime.getRuntime().availableProcessors() : numThreads;
+    gRanks = new double[GAUSSIANS_3SD.length - 2]; //omit 0.0 and 1.0
+    for (int i = 1; i < GAUSSIANS_3SD.length - 1; i++) {
+      gRanks[i - 1] = GAUSSIANS_3SD[i];
+    }
+    workers = new Worker[this.numThreads];
+    for (int i = 0; i < this.numThreads; i++) { workers[i] = new Worker(); }
+    driver = new BarrierTestDriver(this.numThreads);
+  }
+
+  /**
+   * Sets the stream of the following trials.
+   * @param values the distinct values of the stream, integers &ge; 1
+   * @param weight the number of times each value is in the stream
+   * @param weightedUpdate if true, each value is one weighted update, otherwise weight single updates
+   */
+  void setStream(final double[] values, final long weight, final boolean weightedUpdate) {
+    this.values = values;
+    this.weight = weight;
+    this.weightedUpdate = weightedUpdate;
+    if (sketchType == SketchType.ITEMS_SKETCH) {
+      double max = 1;
+      for (int i = 0; i < values.length; i++) { max = Math.max(max, values[i]); }
+      valueDigits = numDigits((long) max);
+      strValues = toStrings(values);
+    }
+    for (int i = 0; i < numThreads; i++) {
+      final int[] order = new int[values.length];
+      for (int j = 0; j < order.length; j++) { order[j] = j; }
+      workers[i].order = order;
+    }
+  }
+
+  /**
+   * Sets the query points of the following trials. The stream must be set first.
+   * @param points the values whose ranks are estimated, integers &ge; 1
+   * @param trueNormRanks the true normalized rank of each point
+   */
+  void setPoints(final double[] points, final double[] trueNormRanks) {
+    this.points = points;
+    this.trueNormRanks = trueNormRanks;
+    if (sketchType == SketchType.FLOATS_SKETCH) {
+      floatPoints = new float[points.length];
+      for (int i = 0; i < points.length; i++) { floatPoints[i] = (float) points[i]; }
+    } else if (sketchType == SketchType.ITEMS_SKETCH) {
+      strPoints = toStrings(points);
+    }
+    for (int i = 0; i < numThreads; i++) { workers[i].setNumPoints(points.length); }
+  }
+
+  /**
+   * Returns the fixed length string of the given value, as presented to the Items sketch.
+   * @param value an integer &ge; 1 no larger than the largest value of the stream
+   * @return the fixed length string of the given value
+   */
+  String toString(final double value) {
+    return longToFixedLengthString((long) value, valueDigits);
+  }
+
+  private String[] toStrings(final double[] arr) {
+    final String[] strArr = new String[arr.length];
+    for (int i = 0; i < arr.length; i++) { strArr[i] = toString(arr[i]); }
+    return strArr;
+  }
+
+  /**
+   * Runs the given number of trials over the workers and resets the error sketches.
+   * @param numTrials the number of trials
+   * @return for each point the rank errors at the Gaussian ranks of -3SD to +3SD
+   */
+  double[][] runTrials(final int numTrials) {
+    driver.run(index -> { //worker index runs trials index, index + numThreads, ...
+      for (int t = index; t < numTrials; t += numThreads) {
+        workers[index].doTrial();
+      }
+    });
+    final int numPoints = points.length;
+    final double[][] errQ = new double[numPoints][];
+    for (int pp = 0; pp < numPoints; pp++) {
+      if (numThreads == 1) {
+        errQ[pp] = workers[0].errorSkArr[pp].getQuantiles(gRanks);
+      } else {
+        final DoublesUnion union = DoublesUnion.builder().setMaxK(1 << errorSkLgK).build();
+        for (int i = 0; i < numThreads; i++) { union.union(workers[i].errorSkArr[pp]); }
+        errQ[pp] = union.getResult().getQuantiles(gRanks);
+      }
+      for (int i = 0; i < numThreads; i++) { workers[i].errorSkArr[pp].reset(); }
+    }
+    return errQ;
+  }
+
+  /**
+   * Returns the sketch of the first worker, as left by its last trial.
+   * @return the sketch of the first worker
+   */
+  KllSketch getSketch() {
+    return workers[0].sketch;
+  }
+
+  void shutdown() {
+    driver.shutdown();
+  }
+
+  private KllSketch newSketch() {
+    switch (sketchType) {
+      case DOUBLES_SKETCH: return direct
+          ? KllDoublesSketch.newDirectInstance(k, WritableMemory.allocate(10000), memReqSvr)
+          : KllDoublesSketch.newHeapInstance(k);
+      case FLOATS_SKETCH: return direct
+          ? KllFloatsSketch.newDirectInstance(k, WritableMemory.allocate(10000), memReqSvr)
+          : KllFloatsSketch.newHeapInstance(k);
+      case ITEMS_SKETCH: return KllItemsSketch.newHeapInstance(k, Comparator.naturalOrder(), serDe);
+      default: throw new IllegalArgumentException("Unsupported sketch type: " + sketchType);
+    }
+  }
+
+  /**
+   * The sketch, the permutation of the values and the error sketch shard of one worker thread.
+   */
+  private final class Worker {
+    private final KllSketch sketch = newSketch();
+    private final Random rand = new Random();
+    private int[] order;
+    private UpdateDoublesSketch[] errorSkArr = new UpdateDoublesSketch[0];
+
+    void setNumPoints(final int numPoints) {
+      if (errorSkArr.length == numPoints) { return; }
+      final DoublesSketchBuilder builder = DoublesSketch.builder().setK(1 << errorSkLgK);
+      errorSkArr = new UpdateDoublesSketch[numPoints];
+      for (int i = 0; i < numPoints; i++) { errorSkArr[i] = builder.build(); }
+    }
+
+    /**
+     * A trial consists of updating a virgin sketch with the values in a new random order.
+     * We capture the estimated ranks for all points and then update the error sketches with those
+     * error values.
+     */
+    void doTrial() {
+      sketch.reset();
+      Shuffle.shuffle(order, rand);
+      update();
+      final double[] estRanks = getRanks();
+      for (int pp = 0; pp < estRanks.length; pp++) {
+        errorSkArr[pp].update(estRanks[pp] - trueNormRanks[pp]);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void update() {
+      final int n = order.length;
+      switch (sketchType) {
+        case DOUBLES_SKETCH: {
+          final KllDoublesSketch sk = (KllDoublesSketch) sketch;
+          for (int i = 0; i < n; i++) {
+            final double v = values[order[i]];
+            if (weightedUpdate) { sk.update(v, weight); }
+            else { for (long w = 0; w < weight; w++) { sk.update(v); } }
+          }
+          break;
+        }
+        case FLOATS_SKETCH: {
+          final KllFloatsSketch sk = (KllFloatsSketch) sketch;
+          for (int i = 0; i < n; i++) {
+            final float v = (float) values[order[i]];
+            if (weightedUpdate) { sk.update(v, weight); }
+            else { for (long w = 0; w < weight; w++) { sk.update(v); } }
+          }
+          break;
+        }
+        default: {
+          final KllItemsSketch<String> sk = (KllItemsSketch<String>) sketch;
+          for (int i = 0; i < n; i++) {
+            final String v = strValues[order[i]];
+            if (weightedUpdate) { sk.update(v, weight); }
+            else { for (long w = 0; w < weight; w++) { sk.update(v); } }
+          }
+        }
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private double[] getRanks() {
+      final int numPoints = points.length;
+      final double[] estRanks;
+      switch (sketchType) {
+        case DOUBLES_SKETCH: {
+          final KllDoublesSketch sk = (KllDoublesSketch) sketch;
+          if (useBulk) { return sk.getRanks(points, criteria); }
+          estRanks = new double[numPoints];
+          for (int pp = 0; pp < numPoints; pp++) { estRanks[pp] = sk.getRank(points[pp], criteria); }
+          return estRanks;
+        }
+        case FLOATS_SKETCH: {
+          final KllFloatsSketch sk = (KllFloatsSketch) sketch;
+          if (useBulk) { return sk.getRanks(floatPoints, criteria); }
+          estRanks = new double[numPoints];
+          for (int pp = 0; pp < numPoints; pp++) { estRanks[pp] = sk.getRank(floatPoints[pp], criteria); }
+          return estRanks;
+        }
+        default: {
+          final KllItemsSketch<String> sk = (KllItemsSketch<String>) sketch;
+          if (useBulk) { return sk.getRanks(strPoints, criteria); }
+          estRanks = new double[numPoints];
+          for (int pp = 0; pp < numPoints; pp++) { estRanks[pp] = sk.getRank(strPoints[pp], criteria); }
+          return estRanks;
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.kll.concurrent;
+
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.datasketches.Job;
+import org.apache.datasketches.JobProfile;
+import org.apache.datasketches.Properties;
+import org.apache.datasketches.characterization.concurrent.PhasedTestContext;
+import org.apache.datasketches.kll.KllDoublesSketch;
+
+/**
+ * Multiple writers feeding one logical KllDoublesSketch while readers take periodic snapshots.
+ * Three strategies are compared:
+ * <ul>
+ * <li>SYNCHRONIZED: one sketch, written and snapshotted under its monitor.</li>
+ * <li>STRIPED: KLL_stripes sketches, each under its own monitor. A writer picks the stripe by the
+ * hash of its thread.</li>
+ * <li>THREAD_LOCAL: one sketch per writer under its own, normally uncontended, monitor.</li>
+ * </ul>
+ * A snapshot merges every sketch of the strategy into a fresh KllDoublesSketch.
+ *
+ * <p>Writer w of W writes the values w, w + W, w + 2W, ..., so together the writers of a trial
+ * write each of the values 0 to n - 1 exactly once and the exact normalized rank of a value x is
+ * (x + 1) / n. After the writers are done a final snapshot is compared against this truth at
+ * KLL_numRankPoints evenly spaced points.</p>
+ *
+ * <p>For every thread count in Sweep_threads and snapshot interval in Sweep_snapshotInterval_uS a
+ * row is output per strategy with the write throughput, the mean snapshot latency, the maximum rank
+ * error of the final snapshot and the bytes of all sketches.</p>
+ */
+public class ConcurrentKllSpeedProfile implements JobProfile {
+  private Job job;
+  private Properties prop;
+  private int k;
+  private int lgT;
+  private int lgU;
+  private int numStripes;
+  private int numReaders;
+  private int numRankPoints;
+
+  //JobProfile
+  @Override
+  public void start(final Job job) {
+    this.job = job;
+    prop = job.getProperties();
+    k = Integer.parseInt(prop.mustGet("KllK"));
+    lgT = Integer.parseInt(prop.mustGet("Trials_lgT"));
+    lgU = Integer.parseInt(prop.mustGet("KLL_lgU"));
+    numStripes = Integer.parseInt(prop.mustGet("KLL_stripes"));
+    numReaders = Integer.parseInt(prop.mustGet("KLL_numReaders"));
+    numRankPoints = Integer.parseInt(prop.mustGet("KLL_numRankPoints"));
+    doSweep();
+    shutdown();
+    cleanup();
+  }
+
+  @Override
+  public void shutdown() {}
+
+  @Override
+  public void cleanup() {}
+  //end JobProfile
+
+  private void doSweep() {
+    final String[] threads = prop.mustGet("Sweep_threads").split(",");
+    final String[] intervals = prop.mustGet("Sweep_snapshotInterval_uS").split(",");
+    final String[] strategies = prop.mustGet("Sweep_strategy").split(",");
+    final StringBuilder dataStr = new StringBuilder();
+    job.println(getHeader());
+    for (int i = 0; i < threads.length; i++) {
+      final int numWriters = Integer.parseInt(threads[i].trim());
+      for (int j = 0; j < intervals.length; j++) {
+        final long interval_nS = Long.parseLong(intervals[j].trim()) * 1000L;
+        for (int s = 0; s < strategies.length; s++) {
+          final String name = strategies[s].trim().toUpperCase();
+          final int numSketches;
+          switch (name) {
+            case "SYNCHRONIZED": numSketches = 1; break;
+            case "STRIPED": numSketches = numStripes; break;
+            case "THREAD_LOCAL": numSketches = numWriters; break;
+            default: throw new IllegalArgumentException("Unknown strategy: " + name);
+          }
+          doTrials(new Sketches(numSketches, name.equals("THREAD_LOCAL")), name, numWriters,
+              interval_nS, dataStr);
+        }
+      }
+    }
+  }
+
+  private void doTrials(final Sketches sketches, final String name, final int numWriters,
+      final long interval_nS, final StringBuilder dataStr) {
+    final PhasedTestContext ctx = new PhasedTestContext();
+    final WriterOp[] writers = new WriterOp[numWriters];
+    for (int w = 0; w < numWriters; w++) {
+      writers[w] = new WriterOp(sketches, w, numWriters);
+      ctx.addWriterThread(writers[w]);
+    }
+    final ReaderOp[] readers = new ReaderOp[numReaders];
+    for (int r = 0; r < numReaders; r++) {
+      readers[r] = new ReaderOp(sketches, interval_nS);
+      ctx.addReaderThread(readers[r]);
+    }
+    ctx.startThreads();
+
+    final int trials = 1 << lgT;
+    final int uPerTrial = 1 << lgU;
+    long sumWriteTime_nS = 0;
+    long sumWrites = 0;
+    long sumSnapshotTime_nS = 0;
+    long sumSnapshots = 0;
+    double sumMaxRankErr = 0;
+    for (int t = 0; t < trials; t++) {
+      sketches.reset();
+      for (final WriterOp writer : writers) { writer.reset(); }
+      for (final ReaderOp reader : readers) { reader.reset(); }
+
+      ctx.doTrial(uPerTrial);
+      sumWriteTime_nS += ctx.getTotalTimeNS();
+      sumWrites += ctx.getNumWrites();
+      for (final ReaderOp reader : readers) {
+        sumSnapshotTime_nS += reader.sumSnapshotTime_nS;
+        sumSnapshots += reader.numSnapshots;
+      }
+      sumMaxRankErr += getMaxRankError(sketches.snapshot(), ctx.getNumWrites());
+    }
+    ctx.stopAllThreads();
+
+    final double writeTimePerU_nS = (double) sumWriteTime_nS / sumWrites;
+
+    //OUTPUT
+    dataStr.setLength(0);
+    dataStr.append(name).append(TAB);
+    dataStr.append(numWriters).append(TAB);
+    dataStr.append(numReaders).append(TAB);
+    dataStr.append(interval_nS / 1000L).append(TAB);
+    dataStr.append(trials).append(TAB);
+    dataStr.append(uPerTrial).append(TAB);
+    dataStr.append(writeTimePerU_nS).append(TAB);
+    dataStr.append(1E9 / writeTimePerU_nS).append(TAB);
+    dataStr.append((double) sumSnapshots / trials).append(TAB);
+    dataStr.append(sumSnapshots == 0 ? 0 : (double) sumSnapshotTime_nS / sumSnapshots / 1000.0).append(TAB);
+    dataStr.append(sumMaxRankErr / trials).append(TAB);
+    dataStr.append(sketches.getBytes());
+    job.println(dataStr.toString());
+  }
+
+  /**
+   * The writers wrote each of the values 0 to n - 1 once, so the exact rank of x is (x + 1) / n.
+   */
+  private double getMaxRankError(final KllDoublesSketch snapshot, final long n) {
+    double maxErr = 0;
+    for (int i = 1; i <= numRankPoints; i++) {
+      final long x = ((n * i) / (numRankPoints + 1)) - 1;
+      final double trueRank = (double) (x + 1) / n;
+      maxErr = Math.max(maxErr, Math.abs(snapshot.getRank(x) - trueRank));
+    }
+    return maxErr;
+  }
+
+  private static String getHeader() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("Strategy").append(TAB);
+    sb.append("Writers").append(TAB);
+    sb.append("Readers").append(TAB);
+    sb.append("SnapshotInterval_uS").append(TAB);
+    sb.append("Trials").append(TAB);
+    sb.append("U").append(TAB);
+    sb.append("Write_nS/u").append(TAB);
+    sb.append("Writes/Sec").append(TAB);
+    sb.append("Snapshots/Trial").append(TAB);
+    sb.append("Snapshot_uS").append(TAB);
+    sb.append("MaxRankErr").append(TAB);
+    sb.append("Bytes");
+    return sb.toString();
+  }
+
+  /**
+   * The sketches of one strategy, each guarded by its own monitor.
+   */
+  private final class Sketches {
+    private final KllDoublesSketch[] sketches;
+    private final boolean threadLocal;
+
+    Sketches(final int numSketches, final boolean threadLocal) {
+      sketches = new KllDoublesSketch[numSketches];
+      for (int i = 0; i < numSketches; i++) { sketches[i] = KllDoublesSketch.newHeapInstance(k); }
+      this.threadLocal = threadLocal;
+    }
+
+    void update(final int writerIndex, final double v) {
+      final KllDoublesSketch sketch;
+      if (threadLocal) {
+        sketch = sketches[writerIndex];
+      } else if (sketches.length == 1) {
+        sketch = sketches[0];
+      } else {
+        final int h = System.identityHashCode(Thread.currentThread());
+        sketch = sketches[((h ^ (h >>> 16)) & 0x7FFFFFFF) % sketches.length];
+      }
+      synchronized (sketch) {
+        sketch.update(v);
+      }
+    }
+
+    KllDoublesSketch snapshot() {
+      final KllDoublesSketch snapshot = KllDoublesSketch.newHeapInstance(k);
+      for (final KllDoublesSketch sketch : sketches) {
+        synchronized (sketch) {
+          snapshot.merge(sketch);
+        }
+      }
+      return snapshot;
+    }
+
+    void reset() {
+      for (final KllDoublesSketch sketch : sketches) { sketch.reset(); }
+    }
+
+    int getBytes() {
+      int bytes = 0;
+      for (final KllDoublesSketch sketch : sketches) { bytes += sketch.getSerializedSizeBytes(); }
+      return bytes;
+    }
+  }
+
+  private static final class WriterOp implements Runnable {
+    private final Sketches sketches;
+    private final int writerIndex;
+    private final int jump;
+    private long i;
+
+    WriterOp(final Sketches sketches, final int writerIndex, final int jump) {
+      this.sketches = sketches;
+      this.writerIndex = writerIndex;
+      this.jump = jump;
+    }
+
+    void reset() {
+      i = writerIndex;
+    }
+
+    @Override
+    public void run() {
+      sketches.update(writerIndex, i);
+      i += jump;
+    }
+  }
+
+  private static final class ReaderOp implements Runnable {
+    private final Sketches sketches;
+    private final long interval_nS;
+    long sumSnapshotTime_nS;
+    long numSnapshots;
+
+    ReaderOp(final Sketches sketches, final long interval_nS) {
+      this.sketches = sketches;
+      this.interval_nS = interval_nS;
+    }
+
+    void reset() {
+      sumSnapshotTime_nS = 0;
+      numSnapshots = 0;
+    }
+
+    @Override
+    public void run() {
+      final long startSnapshotTime_nS = System.nanoTime();
+      sketches.snapshot();
+      sumSnapshotTime_nS += System.nanoTime() - startSnapshotTime_nS;
+      numSnapshots++;
+      if (interval_nS > 0) { LockSupport.parkNanos(interval_nS); }
+    }
+  }
+
+}
@@ -163,8 +163,7 @@ public class DoublesSketchSpeedProfile extends BaseQuantilesSpeedProfile {
 
       final long startGetRank = System.nanoTime();
       for (final double value: orderedLittleDoubles) {
-        //compactSketch.getRank(value);
-        final double estRank = compactSketch.getCDF(new double[] {value})[0];
+        compactSketch.getRank(value);
       }
       final long stopGetRank = System.nanoTime();
       compactGetRankTimeNs += stopGetRank - startGetRank;
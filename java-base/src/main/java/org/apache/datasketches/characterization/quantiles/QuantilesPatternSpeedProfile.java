@@ -0,0 +1,300 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.quantiles;
+
+import java.util.Random;
+
+import org.apache.datasketches.Job;
+import org.apache.datasketches.JobProfile;
+import org.apache.datasketches.Properties;
+import org.apache.datasketches.characterization.StreamMaker;
+import org.apache.datasketches.characterization.StreamMaker.Pattern;
+import org.apache.datasketches.kll.KllFloatsSketch;
+import org.apache.datasketches.quantiles.DoublesSketch;
+import org.apache.datasketches.quantiles.UpdateDoublesSketch;
+import org.apache.datasketches.req.ReqSketch;
+
+/**
+ * Update speed of the quantile sketches versus the arrival order of the values: the classic
+ * DoublesSketch, KllFloatsSketch and ReqSketch, selected by the list Sweep_sketch.
+ *
+ * <p>For each stream length 2^lgN in Sweep_lgN and each StreamMaker.Pattern in Sweep_pattern the
+ * stream of the values Stream_offset to N - 1 + Stream_offset is made once. Each fraction d in
+ * Sweep_disorder then swaps a fraction d of the values with a random value at most
+ * Disorder_window positions later, e.g., SORTED with a small d is a nearly sorted stream.
+ * StreamMaker does not implement CLUSTERED and CLUSTERED_ZOOM_IN, so they are rejected.</p>
+ *
+ * <p>The sketch is reset and updated with the stream max(2^Trials_lgU / N, 1) times. Besides the
+ * update time, an untimed pass counts the compress events, which are the updates after which the
+ * number of retained items did not grow by one, i.e., that compacted at least one level. The
+ * schedule of the compactions only depends on N, so the events show whether a difference in time
+ * comes from more compactions or from the cost of each one.</p>
+ */
+public class QuantilesPatternSpeedProfile implements JobProfile {
+  private final StreamMaker streamMaker = new StreamMaker();
+  private final Random rand = new Random();
+  private Job job;
+  private Properties prop;
+  private int lgU;
+  private int offset;
+  private int window;
+
+  //JobProfile
+  @Override
+  public void start(final Job job) {
+    this.job = job;
+    prop = job.getProperties();
+    lgU = Integer.parseInt(prop.mustGet("Trials_lgU"));
+    offset = Integer.parseInt(prop.mustGet("Stream_offset"));
+    window = Integer.parseInt(prop.mustGet("Disorder_window"));
+    if (window < 1) {
+      throw new IllegalArgumentException("Disorder_window must be >= 1: " + window);
+    }
+    doSweep();
+    shutdown();
+    cleanup();
+  }
+
+  @Override
+  public void shutdown() {}
+
+  @Override
+  public void cleanup() {}
+  //end JobProfile
+
+  private void doSweep() {
+    final String[] lgNs = prop.mustGet("Sweep_lgN").split(",");
+    final String[] patterns = prop.mustGet("Sweep_pattern").split(",");
+    final String[] disorders = prop.mustGet("Sweep_disorder").split(",");
+    final String[] sketches = prop.mustGet("Sweep_sketch").split(",");
+    final PatternSketch[] patternSketches = new PatternSketch[sketches.length];
+    for (int s = 0; s < sketches.length; s++) {
+      patternSketches[s] = newPatternSketch(sketches[s].trim().toUpperCase());
+    }
+    final StringBuilder dataStr = new StringBuilder();
+    job.println(getHeader());
+    for (int i = 0; i < lgNs.length; i++) {
+      final int n = 1 << Integer.parseInt(lgNs[i].trim());
+      for (int p = 0; p < patterns.length; p++) {
+        final Pattern pattern = Pattern.valueOf(patterns[p].trim().toUpperCase());
+        if (pattern == Pattern.CLUSTERED || pattern == Pattern.CLUSTERED_ZOOM_IN) {
+          throw new IllegalArgumentException("StreamMaker does not implement " + pattern);
+        }
+        final float[] stream = streamMaker.makeStream(n, pattern, offset);
+        for (int d = 0; d < disorders.length; d++) {
+          final double disorder = Double.parseDouble(disorders[d].trim());
+          final float[] disordered = disorder > 0 ? disorder(stream.clone(), disorder) : stream;
+          for (int s = 0; s < patternSketches.length; s++) {
+            doTrials(patternSketches[s], pattern, disorder, disordered, dataStr);
+          }
+        }
+      }
+    }
+  }
+
+  private PatternSketch newPatternSketch(final String name) {
+    switch (name) {
+      case "CLASSIC": return new ClassicPatternSketch(Integer.parseInt(prop.mustGet("K_classic")));
+      case "KLL": return new KllPatternSketch(Integer.parseInt(prop.mustGet("K_kll")));
+      case "REQ": return new ReqPatternSketch(Integer.parseInt(prop.mustGet("K_req")),
+          Boolean.parseBoolean(prop.mustGet("HRA_req")));
+      default: throw new IllegalArgumentException("Unknown sketch: " + name);
+    }
+  }
+
+  /**
+   * Swaps the given fraction of the values, each with a random value at most window positions later.
+   */
+  private float[] disorder(final float[] arr, final double fraction) {
+    final int n = arr.length;
+    for (int i = 0; i < n - 1; i++) {
+      if (rand.nextDouble() >= fraction) { continue; }
+      final int j = Math.min(n - 1, i + 1 + rand.nextInt(window));
+      final float tmp = arr[i];
+      arr[i] = arr[j];
+      arr[j] = tmp;
+    }
+    return arr;
+  }
+
+  private void doTrials(final PatternSketch ps, final Pattern pattern, final double disorder,
+      final float[] stream, final StringBuilder dataStr) {
+    final int n = stream.length;
+    final int trials = Math.max((1 << lgU) / n, 1);
+    ps.reset();
+    final long events = ps.countCompressEvents(stream); //also warms up
+    final long retained = ps.getNumRetained();
+    long sumUpdateTime_nS = 0;
+    for (int t = 0; t < trials; t++) {
+      ps.reset();
+      final long startUpdateTime_nS = System.nanoTime();
+      ps.update(stream);
+      sumUpdateTime_nS += System.nanoTime() - startUpdateTime_nS;
+    }
+
+    //OUTPUT
+    dataStr.setLength(0);
+    dataStr.append(ps.getName()).append(TAB);
+    dataStr.append(pattern).append(TAB);
+    dataStr.append(disorder).append(TAB);
+    dataStr.append(n).append(TAB);
+    dataStr.append(trials).append(TAB);
+    dataStr.append((double) sumUpdateTime_nS / trials / n).append(TAB);
+    dataStr.append(events).append(TAB);
+    dataStr.append(events == 0 ? 0 : (double) n / events).append(TAB);
+    dataStr.append(retained);
+    job.println(dataStr.toString());
+  }
+
+  private static String getHeader() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("Sketch").append(TAB);
+    sb.append("Pattern").append(TAB);
+    sb.append("Disorder").append(TAB);
+    sb.append("N").append(TAB);
+    sb.append("Trials").append(TAB);
+    sb.append("Update_nS/u").append(TAB);
+    sb.append("CompressEvents").append(TAB);
+    sb.append("U/Event").append(TAB);
+    sb.append("Retained");
+    return sb.toString();
+  }
+
+  /**
+   * A quantile sketch of one family, updated with a whole stream at a time.
+   */
+  private abstract static class PatternSketch {
+
+    abstract String getName();
+
+    abstract void reset();
+
+    abstract void update(float[] stream);
+
+    /**
+     * Updates the sketch with the stream and counts the updates that compacted.
+     * @param stream the stream
+     * @return the number of updates after which the number of retained items did not grow by one
+     */
+    abstract long countCompressEvents(float[] stream);
+
+    abstract long getNumRetained();
+  }
+
+  private static final class ClassicPatternSketch extends PatternSketch {
+    private final UpdateDoublesSketch sketch;
+
+    ClassicPatternSketch(final int k) {
+      sketch = DoublesSketch.builder().setK(k).build();
+    }
+
+    @Override
+    String getName() { return "CLASSIC"; }
+
+    @Override
+    void reset() { sketch.reset(); }
+
+    @Override
+    void update(final float[] stream) {
+      for (int i = 0; i < stream.length; i++) { sketch.update(stream[i]); }
+    }
+
+    @Override
+    long countCompressEvents(final float[] stream) {
+      long events = 0;
+      for (int i = 0; i < stream.length; i++) {
+        final long before = sketch.getNumRetained();
+        sketch.update(stream[i]);
+        if (sketch.getNumRetained() != before + 1) { events++; }
+      }
+      return events;
+    }
+
+    @Override
+    long getNumRetained() { return sketch.getNumRetained(); }
+  }
+
+  private static final class KllPatternSketch extends PatternSketch {
+    private final KllFloatsSketch sketch;
+
+    KllPatternSketch(final int k) {
+      sketch = KllFloatsSketch.newHeapInstance(k);
+    }
+
+    @Override
+    String getName() { return "KLL"; }
+
+    @Override
+    void reset() { sketch.reset(); }
+
+    @Override
+    void update(final float[] stream) {
+      for (int i = 0; i < stream.length; i++) { sketch.update(stream[i]); }
+    }
+
+    @Override
+    long countCompressEvents(final float[] stream) {
+      long events = 0;
+      for (int i = 0; i < stream.length; i++) {
+        final long before = sketch.getNumRetained();
+        sketch.update(stream[i]);
+        if (sketch.getNumRetained() != before + 1) { events++; }
+      }
+      return events;
+    }
+
+    @Override
+    long getNumRetained() { return sketch.getNumRetained(); }
+  }
+
+  private static final class ReqPatternSketch extends PatternSketch {
+    private final ReqSketch sketch;
+
+    ReqPatternSketch(final int k, final boolean hra) {
+      sketch = ReqSketch.builder().setK(k).setHighRankAccuracy(hra).build();
+    }
+
+    @Override
+    String getName() { return "REQ"; }
+
+    @Override
+    void reset() { sketch.reset(); }
+
+    @Override
+    void update(final float[] stream) {
+      for (int i = 0; i < stream.length; i++) { sketch.update(stream[i]); }
+    }
+
+    @Override
+    long countCompressEvents(final float[] stream) {
+      long events = 0;
+      for (int i = 0; i < stream.length; i++) {
+        final long before = sketch.getNumRetained();
+        sketch.update(stream[i]);
+        if (sketch.getNumRetained() != before + 1) { events++; }
+      }
+      return events;
+    }
+
+    @Override
+    long getNumRetained() { return sketch.getNumRetained(); }
+  }
+
+}
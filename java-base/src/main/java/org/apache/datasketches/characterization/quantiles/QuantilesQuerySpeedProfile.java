@@ -0,0 +1,393 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.quantiles;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.datasketches.Job;
+import org.apache.datasketches.JobProfile;
+import org.apache.datasketches.Properties;
+import org.apache.datasketches.characterization.concurrent.BarrierTestDriver;
+import org.apache.datasketches.characterization.tdigest.TDigestUtil;
+import org.apache.datasketches.kll.KllDoublesSketch;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.quantiles.DoublesSketch;
+import org.apache.datasketches.quantiles.UpdateDoublesSketch;
+import org.apache.datasketches.req.ReqSketch;
+import org.apache.datasketches.tdigest.TDigestDouble;
+
+/**
+ * Query speed of the quantile sketches: the classic DoublesSketch, KllDoublesSketch, ReqSketch
+ * and TDigestDouble, selected by the list Sweep_sketch.
+ *
+ * <p>Each sketch is built once from 2^Query_lgN random values and then queried in its read-only
+ * form: the compact DoublesSketch, the KllDoublesSketch wrapped around its serialized image, and
+ * the ReqSketch and the TDigestDouble heapified from their serialized images. Serialization
+ * merges the buffered values of the TDigestDouble, so it is queried in its compressed form.</p>
+ *
+ * <p>For every batch size B in Sweep_batchSize, B sorted query points and B sorted ranks are
+ * queried 2^Trials_lgT times as:</p>
+ * <ul>
+ * <li>single queries, getRank() and getQuantile() once per point,</li>
+ * <li>batch queries, getCDF() and getQuantiles() once per batch. TDigestDouble has no
+ * getQuantiles(), so its batch quantiles are single queries,</li>
+ * <li>cold batch queries, getCDF() on a copy just heapified from the serialized image, which must
+ * first build its sorted view. The difference to the warm getCDF() is the View_nS column. The
+ * compressed TDigestDouble has no sorted view to build, so its View_nS is close to zero.</li>
+ * </ul>
+ *
+ * <p>For each thread count in Query_threads (0 = number of available processors) every thread then
+ * runs the warm getCDF() batches against the one shared sketch, and the aggregate queries per second
+ * are appended as a column.</p>
+ */
+public class QuantilesQuerySpeedProfile implements JobProfile {
+  private static final Random rnd = new Random();
+  private Job job;
+  private Properties prop;
+  private int lgT;
+  private double[] streamValues;
+  private int[] threads;
+
+  //JobProfile
+  @Override
+  public void start(final Job job) {
+    this.job = job;
+    prop = job.getProperties();
+    lgT = Integer.parseInt(prop.mustGet("Trials_lgT"));
+    final int n = 1 << Integer.parseInt(prop.mustGet("Query_lgN"));
+    streamValues = new double[n];
+    for (int i = 0; i < n; i++) { streamValues[i] = rnd.nextDouble(); }
+    final String[] threadsArr = prop.mustGet("Query_threads").split(",");
+    threads = new int[threadsArr.length];
+    for (int i = 0; i < threadsArr.length; i++) {
+      final int t = Integer.parseInt(threadsArr[i].trim());
+      threads[i] = t <= 0 ? Runtime.getRuntime().availableProcessors() : t;
+    }
+    doSweep();
+    shutdown();
+    cleanup();
+  }
+
+  @Override
+  public void shutdown() {}
+
+  @Override
+  public void cleanup() {}
+  //end JobProfile
+
+  private void doSweep() {
+    final String[] sketches = prop.mustGet("Sweep_sketch").split(",");
+    final String[] batchSizes = prop.mustGet("Sweep_batchSize").split(",");
+    final StringBuilder dataStr = new StringBuilder();
+    job.println(getHeader());
+    for (int s = 0; s < sketches.length; s++) {
+      final QuerySketch qs = newQuerySketch(sketches[s].trim().toUpperCase());
+      for (int b = 0; b < batchSizes.length; b++) {
+        doTrials(qs, new Batch(Integer.parseInt(batchSizes[b].trim())), dataStr);
+      }
+    }
+  }
+
+  private QuerySketch newQuerySketch(final String name) {
+    switch (name) {
+      case "CLASSIC": {
+        final UpdateDoublesSketch sk = DoublesSketch.builder()
+            .setK(Integer.parseInt(prop.mustGet("K_classic"))).build();
+        for (int i = 0; i < streamValues.length; i++) { sk.update(streamValues[i]); }
+        return new ClassicQuery(sk.compact().toByteArray());
+      }
+      case "KLL": {
+        final KllDoublesSketch sk = KllDoublesSketch.newHeapInstance(Integer.parseInt(prop.mustGet("K_kll")));
+        for (int i = 0; i < streamValues.length; i++) { sk.update(streamValues[i]); }
+        return new KllQuery(sk.toByteArray());
+      }
+      case "REQ": {
+        final ReqSketch sk = ReqSketch.builder().setK(Integer.parseInt(prop.mustGet("K_req"))).build();
+        for (int i = 0; i < streamValues.length; i++) { sk.update((float) streamValues[i]); }
+        return new ReqQuery(sk.toByteArray());
+      }
+      case "TDIGEST": {
+        final TDigestDouble sk = new TDigestDouble(Short.parseShort(prop.mustGet("K_tdigest")));
+        for (int i = 0; i < streamValues.length; i++) { sk.update(streamValues[i]); }
+        return new TDigestQuery(sk.toByteArray());
+      }
+      default: throw new IllegalArgumentException("Unknown sketch: " + name);
+    }
+  }
+
+  private void doTrials(final QuerySketch qs, final Batch batch, final StringBuilder dataStr) {
+    final int trials = 1 << lgT;
+    final int b = batch.size;
+    qs.getCDF(batch); //warm up, also builds the sorted view before the threads share the sketch
+    qs.getQuantiles(batch);
+
+    //single queries
+    long startTime_nS = System.nanoTime();
+    for (int t = 0; t < trials; t++) {
+      for (int i = 0; i < b; i++) { qs.getRank(batch, i); }
+    }
+    final long rankTime_nS = System.nanoTime() - startTime_nS;
+    startTime_nS = System.nanoTime();
+    for (int t = 0; t < trials; t++) {
+      for (int i = 0; i < b; i++) { qs.getQuantile(batch, i); }
+    }
+    final long quantileTime_nS = System.nanoTime() - startTime_nS;
+
+    //batch queries
+    startTime_nS = System.nanoTime();
+    for (int t = 0; t < trials; t++) { qs.getCDF(batch); }
+    final long cdfTime_nS = System.nanoTime() - startTime_nS;
+    startTime_nS = System.nanoTime();
+    for (int t = 0; t < trials; t++) { qs.getQuantiles(batch); }
+    final long quantilesTime_nS = System.nanoTime() - startTime_nS;
+
+    //cold batch queries, only the first query on each copy is timed
+    long coldCdfTime_nS = 0;
+    for (int t = 0; t < trials; t++) {
+      final QuerySketch copy = qs.heapify();
+      startTime_nS = System.nanoTime();
+      copy.getCDF(batch);
+      coldCdfTime_nS += System.nanoTime() - startTime_nS;
+    }
+
+    final double totalQ = (double) trials * b;
+
+    //OUTPUT
+    dataStr.setLength(0);
+    dataStr.append(qs.getName()).append(TAB);
+    dataStr.append(streamValues.length).append(TAB);
+    dataStr.append(qs.getNumRetained()).append(TAB); //centroids for TDIGEST
+    dataStr.append(qs.image.length).append(TAB);
+    dataStr.append(b).append(TAB);
+    dataStr.append(trials).append(TAB);
+    dataStr.append(rankTime_nS / totalQ).append(TAB);
+    dataStr.append(quantileTime_nS / totalQ).append(TAB);
+    dataStr.append(cdfTime_nS / totalQ).append(TAB);
+    dataStr.append(quantilesTime_nS / totalQ).append(TAB);
+    dataStr.append(coldCdfTime_nS / totalQ).append(TAB);
+    dataStr.append((double) (coldCdfTime_nS - cdfTime_nS) / trials);
+    for (int i = 0; i < threads.length; i++) {
+      final int numThreads = threads[i];
+      final BarrierTestDriver driver = new BarrierTestDriver(numThreads);
+      final long readTime_nS = driver.run(index -> {
+        for (int t = 0; t < trials; t++) { qs.getCDF(batch); }
+      });
+      driver.shutdown();
+      dataStr.append(TAB).append(totalQ * numThreads * 1E9 / readTime_nS);
+    }
+    job.println(dataStr.toString());
+  }
+
+  private String getHeader() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("Sketch").append(TAB);
+    sb.append("N").append(TAB);
+    sb.append("Retained").append(TAB);
+    sb.append("SerBytes").append(TAB);
+    sb.append("Batch").append(TAB);
+    sb.append("Trials").append(TAB);
+    sb.append("Rank_nS").append(TAB);
+    sb.append("Quantile_nS").append(TAB);
+    sb.append("CDF_nS/q").append(TAB);
+    sb.append("Quantiles_nS/q").append(TAB);
+    sb.append("ColdCDF_nS/q").append(TAB);
+    sb.append("View_nS");
+    for (int i = 0; i < threads.length; i++) {
+      sb.append(TAB).append("Queries/Sec_T").append(threads[i]);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * B sorted query points, as doubles and floats, and B sorted normalized ranks.
+   */
+  private static final class Batch {
+    final int size;
+    final double[] points;
+    final float[] floatPoints;
+    final double[] ranks;
+
+    Batch(final int size) {
+      this.size = size;
+      points = new double[size];
+      floatPoints = new float[size];
+      ranks = new double[size];
+      for (int i = 0; i < size; i++) {
+        points[i] = rnd.nextDouble();
+        ranks[i] = rnd.nextDouble();
+      }
+      Arrays.sort(points);
+      Arrays.sort(ranks);
+      for (int i = 0; i < size; i++) { floatPoints[i] = (float) points[i]; }
+    }
+  }
+
+  /**
+   * A read-only sketch of one family and its serialized image.
+   */
+  private abstract static class QuerySketch {
+    final byte[] image;
+
+    QuerySketch(final byte[] image) {
+      this.image = image;
+    }
+
+    abstract String getName();
+
+    abstract long getNumRetained();
+
+    abstract double getRank(Batch batch, int i);
+
+    abstract double getQuantile(Batch batch, int i);
+
+    abstract double[] getCDF(Batch batch);
+
+    abstract void getQuantiles(Batch batch);
+
+    /**
+     * Returns a new sketch heapified from the image, without a sorted view.
+     */
+    abstract QuerySketch heapify();
+  }
+
+  private static final class ClassicQuery extends QuerySketch {
+    private final DoublesSketch sketch;
+
+    ClassicQuery(final byte[] image) {
+      super(image);
+      sketch = DoublesSketch.heapify(Memory.wrap(image));
+    }
+
+    @Override
+    String getName() { return "CLASSIC"; }
+
+    @Override
+    long getNumRetained() { return sketch.getNumRetained(); }
+
+    @Override
+    double getRank(final Batch batch, final int i) { return sketch.getRank(batch.points[i]); }
+
+    @Override
+    double getQuantile(final Batch batch, final int i) { return sketch.getQuantile(batch.ranks[i]); }
+
+    @Override
+    double[] getCDF(final Batch batch) { return sketch.getCDF(batch.points); }
+
+    @Override
+    void getQuantiles(final Batch batch) { sketch.getQuantiles(batch.ranks); }
+
+    @Override
+    QuerySketch heapify() { return new ClassicQuery(image); }
+  }
+
+  private static final class KllQuery extends QuerySketch {
+    private final KllDoublesSketch sketch;
+
+    KllQuery(final byte[] image) {
+      super(image);
+      sketch = KllDoublesSketch.wrap(Memory.wrap(image));
+    }
+
+    @Override
+    String getName() { return "KLL"; }
+
+    @Override
+    long getNumRetained() { return sketch.getNumRetained(); }
+
+    @Override
+    double getRank(final Batch batch, final int i) { return sketch.getRank(batch.points[i]); }
+
+    @Override
+    double getQuantile(final Batch batch, final int i) { return sketch.getQuantile(batch.ranks[i]); }
+
+    @Override
+    double[] getCDF(final Batch batch) { return sketch.getCDF(batch.points); }
+
+    @Override
+    void getQuantiles(final Batch batch) { sketch.getQuantiles(batch.ranks); }
+
+    @Override
+    QuerySketch heapify() { return new KllQuery(image); }
+  }
+
+  private static final class ReqQuery extends QuerySketch {
+    private final ReqSketch sketch;
+
+    ReqQuery(final byte[] image) {
+      super(image);
+      sketch = ReqSketch.heapify(Memory.wrap(image));
+    }
+
+    @Override
+    String getName() { return "REQ"; }
+
+    @Override
+    long getNumRetained() { return sketch.getNumRetained(); }
+
+    @Override
+    double getRank(final Batch batch, final int i) { return sketch.getRank(batch.floatPoints[i]); }
+
+    @Override
+    double getQuantile(final Batch batch, final int i) { return sketch.getQuantile(batch.ranks[i]); }
+
+    @Override
+    double[] getCDF(final Batch batch) { return sketch.getCDF(batch.floatPoints); }
+
+    @Override
+    void getQuantiles(final Batch batch) { sketch.getQuantiles(batch.ranks); }
+
+    @Override
+    QuerySketch heapify() { return new ReqQuery(image); }
+  }
+
+  private static final class TDigestQuery extends QuerySketch {
+    private final TDigestDouble sketch;
+
+    TDigestQuery(final byte[] image) {
+      super(image);
+      sketch = TDigestDouble.heapify(Memory.wrap(image));
+    }
+
+    @Override
+    String getName() { return "TDIGEST"; }
+
+    @Override
+    long getNumRetained() { return TDigestUtil.getNumCentroids(sketch); }
+
+    @Override
+    double getRank(final Batch batch, final int i) { return sketch.getRank(batch.points[i]); }
+
+    @Override
+    double getQuantile(final Batch batch, final int i) { return sketch.getQuantile(batch.ranks[i]); }
+
+    @Override
+    double[] getCDF(final Batch batch) { return sketch.getCDF(batch.points); }
+
+    @Override
+    void getQuantiles(final Batch batch) {
+      for (int i = 0; i < batch.size; i++) { sketch.getQuantile(batch.ranks[i]); }
+    }
+
+    @Override
+    QuerySketch heapify() { return new TDigestQuery(image); }
+  }
+
+}
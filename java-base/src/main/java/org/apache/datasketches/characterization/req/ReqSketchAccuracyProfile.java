@@ -25,6 +25,8 @@ import static org.apache.datasketches.SpacedPoints.expSpaced;
 import static org.apache.datasketches.common.Util.pwr2SeriesNext;
 import static org.apache.datasketches.quantilescommon.QuantilesUtil.evenlySpacedDoubles;
 
+import java.util.Random;
+
 import org.apache.datasketches.Job;
 import org.apache.datasketches.JobProfile;
 import org.apache.datasketches.MonotonicPoints;
@@ -33,15 +35,22 @@ import org.apache.datasketches.characterization.Shuffle;
 import org.apache.datasketches.characterization.StreamMaker;
 import org.apache.datasketches.characterization.StreamMaker.Pattern;
 import org.apache.datasketches.characterization.TrueRanks;
+import org.apache.datasketches.characterization.concurrent.BarrierTestDriver;
 import org.apache.datasketches.hll.HllSketch;
+import org.apache.datasketches.hll.Union;
 import org.apache.datasketches.quantiles.DoublesSketch;
 import org.apache.datasketches.quantiles.DoublesSketchBuilder;
+import org.apache.datasketches.quantiles.DoublesUnion;
 import org.apache.datasketches.quantiles.UpdateDoublesSketch;
 import org.apache.datasketches.req.ReqDebugImplTest;
 import org.apache.datasketches.req.ReqSketch;
 import org.apache.datasketches.req.ReqSketchBuilder;
 
 /**
+ * The trials of a stream length are run on NumThreads worker threads (0 = number of available
+ * processors). Each worker has its own ReqSketch, its own copy of the stream to shuffle and its own
+ * error sketches, which are merged per plot point when all trials are done.
+ *
  * @author Lee Rhodes
  */
 public class ReqSketchAccuracyProfile implements JobProfile {
@@ -64,6 +73,7 @@ public class ReqSketchAccuracyProfile implements JobProfile {
   private int errQSkLgK; //size of the error quantiles sketches
   private int errHllSkLgK; //size of the error HLL sketch
   private boolean shuffle; //if true, shuffle for each trial
+  private int numThreads; //worker threads for the trials
 
   //plotting & x-axis configuration
   private int numPlotPoints;
@@ -87,12 +97,12 @@ public class ReqSketchAccuracyProfile implements JobProfile {
   boolean LAZY_COMPRESSION;
 
   //DERIVED globals
-  private ReqSketch sk;
+  private ReqSketch sk; //the sketch of the first worker, used for the bounds and the details
+  private Worker[] workers;
+  private BarrierTestDriver driver;
 
   //The array of Gaussian quantiles for +/- StdDev error analysis
   private double[] gRanks;
-  private UpdateDoublesSketch[] errQSkArr;
-  private HllSketch[] errHllSkArr;
 
   //Specific to a streamLength
   private TrueRanks trueRanks;
@@ -128,13 +138,17 @@ public class ReqSketchAccuracyProfile implements JobProfile {
     extractProperties();
     configureCommon();
     doStreamLengths();
+    shutdown();
+    cleanup();
   }
 
   @Override
   public void shutdown() {}
 
   @Override
-  public void cleanup() {}
+  public void cleanup() {
+    driver.shutdown();
+  }
   //end JobProfile
 
   private void extractProperties() {
@@ -151,6 +165,8 @@ public class ReqSketchAccuracyProfile implements JobProfile {
     errQSkLgK = Integer.parseInt(prop.mustGet("ErrQSkLgK"));
     errHllSkLgK = Integer.parseInt(prop.mustGet("ErrHllSkLgK"));
     shuffle = Boolean.valueOf(prop.mustGet("Shuffle"));
+    numThreads = Integer.parseInt(prop.mustGet("NumThreads"));
+    if (numThreads <= 0) { numThreads = Runtime.getRuntime().availableProcessors(); }
     //plotting
     numPlotPoints = Integer.parseInt(prop.mustGet("NumPlotPoints"));
     evenlySpaced = Boolean.valueOf(prop.mustGet("EvenlySpaced"));
@@ -175,30 +191,26 @@ public class ReqSketchAccuracyProfile implements JobProfile {
     if (reqDebugLevel != null) {
       final int level = Integer.parseInt(reqDebugLevel);
       reqDebugImplTest = new ReqDebugImplTest(level, reqDebugFmt);
+      numThreads = 1; //the debug output of concurrent trials would be interleaved
     }
   }
 
   void configureCommon() {
-    configureSketch();
-    errQSkArr = new UpdateDoublesSketch[numPlotPoints];
-    errHllSkArr = new HllSketch[numPlotPoints];
-    //configure the error quantiles array & HLL sketch arr
-    final DoublesSketchBuilder builder = DoublesSketch.builder().setK(1 << errQSkLgK);
-    for (int i = 0; i < numPlotPoints; i++) {
-      errQSkArr[i] = builder.build();
-      errHllSkArr[i] = new HllSketch(errHllSkLgK);
-    }
+    workers = new Worker[numThreads];
+    for (int i = 0; i < numThreads; i++) { workers[i] = new Worker(); }
+    sk = workers[0].sk;
+    driver = new BarrierTestDriver(numThreads);
     gRanks = new double[GAUSSIANS_3SD.length - 2]; //omit 0.0 and 1.0
     for (int i = 1; i < GAUSSIANS_3SD.length - 1; i++) {
       gRanks[i - 1] = GAUSSIANS_3SD[i];
     }
   }
 
-  void configureSketch() {
+  ReqSketch newSketch() {
     final ReqSketchBuilder bldr = ReqSketch.builder();
     bldr.setK(K).setHighRankAccuracy(hra);
     if (reqDebugImplTest != null) { bldr.setReqDebug(reqDebugImplTest); }
-    sk = bldr.build();
+    return bldr.build();
   }
 
   private void doStreamLengths() {
@@ -272,12 +284,15 @@ public class ReqSketchAccuracyProfile implements JobProfile {
       sortedPPValues[pp] = sortedStream[idx];
     }
 
-    //Do numTrials for all plotpoints
-    for (int t = 0; t < numTrials; t++) {
-      doTrial();
-
-      //sumAllocCounts = sk.
+    //Do numTrials for all plotpoints, worker index runs trials index, index + numThreads, ...
+    for (int i = 0; i < numThreads; i++) {
+      workers[i].stream = (i == 0 || !shuffle) ? stream : stream.clone();
     }
+    driver.run(index -> {
+      for (int t = index; t < numTrials; t += numThreads) {
+        workers[index].doTrial();
+      }
+    });
 
     // for special metrics for capturing accuracy per byte
     double sumRelStdDev = 0;
@@ -285,7 +300,8 @@ public class ReqSketchAccuracyProfile implements JobProfile {
     double sumAddStdDev = 0;
     int numAddStdDev = 0;
 
-    //at this point each of the errQSkArr sketches has a distribution of error from numTrials
+    //at this point the errQSkArr sketches of all workers together have a distribution of error
+    //from numTrials
     for (int pp = 0 ; pp < numPlotPoints; pp++) {
       final double v = sortedPPValues[pp];
       final double tr = v / streamLength; //the true rank
@@ -293,8 +309,8 @@ public class ReqSketchAccuracyProfile implements JobProfile {
       final double rub = sk.getRankUpperBound(tr, sd) - tr;
 
       //for each of the numErrDistRanks distributions extract the sd Gaussian quantiles
-      final double[] errQ = errQSkArr[pp].getQuantiles(gRanks);
-      final int uErrCnt = (int)round(errHllSkArr[pp].getEstimate());
+      final double[] errQ = getErrQuantiles(pp);
+      final int uErrCnt = (int)round(getUniqueErrCount(pp));
 
       //Plot the row.
       final double relPP = (double)(pp + 1) / numPlotPoints;
@@ -312,8 +328,10 @@ public class ReqSketchAccuracyProfile implements JobProfile {
         sumRelStdDev += errQ[4] / (hra ? 1 - relPP : relPP);
         numRelStdDev++;
       }
-      errQSkArr[pp].reset(); //reset the errQSkArr for next streamLength
-      errHllSkArr[pp].reset(); //reset the errHllSkArr for next streamLength
+      for (int i = 0; i < numThreads; i++) {
+        workers[i].errQSkArr[pp].reset(); //reset the errQSkArr for next streamLength
+        workers[i].errHllSkArr[pp].reset(); //reset the errHllSkArr for next streamLength
+      }
     }
     final int serBytes = sk.getSerializedSizeBytes();
 
@@ -328,22 +346,63 @@ public class ReqSketchAccuracyProfile implements JobProfile {
   }
 
   /**
-   * A trial consists of updating a virgin sketch with a stream of values.
-   * Capture the estimated ranks for all plotPoints and then update the errQSkArr with those
-   * error values.
+   * Returns the Gaussian quantiles of the error distribution at a plot point over all workers.
+   * A single worker's error sketch is used as is.
    */
-  void doTrial() {
-    sk.reset();
-    if (shuffle) { Shuffle.shuffle(stream); }
-    final int sl = stream.length;
-    for (int i = 0; i < sl; i++) { sk.update(stream[i]); }
-    //get estimated ranks from sketch for all plotpoints
-    final double[] estRanks = sk.getRanks(sortedPPValues);
-    //compute errors and update HLL for each plotPoint
-    for (int pp = 0; pp < numPlotPoints; pp++) {
-      final double errorAtPlotPoint = estRanks[pp] - (double)sortedPPAbsRanks[pp] / sl;
-      errQSkArr[pp].update(errorAtPlotPoint); //update each of the errQArr sketches
-      errHllSkArr[pp].update(errorAtPlotPoint); //unique count of error values
+  private double[] getErrQuantiles(final int pp) {
+    if (numThreads == 1) { return workers[0].errQSkArr[pp].getQuantiles(gRanks); }
+    final DoublesUnion union = DoublesUnion.builder().setMaxK(1 << errQSkLgK).build();
+    for (int i = 0; i < numThreads; i++) { union.union(workers[i].errQSkArr[pp]); }
+    return union.getResult().getQuantiles(gRanks);
+  }
+
+  /**
+   * Returns the estimated number of unique error values at a plot point over all workers.
+   */
+  private double getUniqueErrCount(final int pp) {
+    if (numThreads == 1) { return workers[0].errHllSkArr[pp].getEstimate(); }
+    final Union union = new Union(errHllSkLgK);
+    for (int i = 0; i < numThreads; i++) { union.update(workers[i].errHllSkArr[pp]); }
+    return union.getEstimate();
+  }
+
+  /**
+   * The sketch, the stream and the error sketches of one worker thread.
+   */
+  private final class Worker {
+    private final ReqSketch sk = newSketch();
+    private final Random rand = new Random();
+    private final UpdateDoublesSketch[] errQSkArr = new UpdateDoublesSketch[numPlotPoints];
+    private final HllSketch[] errHllSkArr = new HllSketch[numPlotPoints];
+    private float[] stream; //this worker's copy if shuffled, otherwise the shared stream
+
+    Worker() {
+      //configure the error quantiles array & HLL sketch arr
+      final DoublesSketchBuilder builder = DoublesSketch.builder().setK(1 << errQSkLgK);
+      for (int i = 0; i < numPlotPoints; i++) {
+        errQSkArr[i] = builder.build();
+        errHllSkArr[i] = new HllSketch(errHllSkLgK);
+      }
+    }
+
+    /**
+     * A trial consists of updating a virgin sketch with a stream of values.
+     * Capture the estimated ranks for all plotPoints and then update the errQSkArr with those
+     * error values.
+     */
+    void doTrial() {
+      sk.reset();
+      if (shuffle) { Shuffle.shuffle(stream, rand); }
+      final int sl = stream.length;
+      for (int i = 0; i < sl; i++) { sk.update(stream[i]); }
+      //get estimated ranks from sketch for all plotpoints
+      final double[] estRanks = sk.getRanks(sortedPPValues);
+      //compute errors and update HLL for each plotPoint
+      for (int pp = 0; pp < numPlotPoints; pp++) {
+        final double errorAtPlotPoint = estRanks[pp] - (double)sortedPPAbsRanks[pp] / sl;
+        errQSkArr[pp].update(errorAtPlotPoint); //update each of the errQArr sketches
+        errHllSkArr[pp].update(errorAtPlotPoint); //unique count of error values
+      }
     }
   }
 
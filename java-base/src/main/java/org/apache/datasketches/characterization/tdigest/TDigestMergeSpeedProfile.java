@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.tdigest;
+
+import java.util.Random;
+
+import org.apache.datasketches.Properties;
+import org.apache.datasketches.characterization.quantiles.BaseQuantilesSpeedProfile;
+import org.apache.datasketches.tdigest.TDigestDouble;
+
+/**
+ * Merge speed of TDigestDouble, as ReqMergeSpeedProfile and KllMergeSpeedProfile measure it for
+ * their sketches: each trial sprays the stream round-robin across numSketches sketches and then
+ * merges them one after the other into a new sketch. The merge time includes merging the buffer of
+ * the result, forced by one getRank().
+ */
+public class TDigestMergeSpeedProfile extends BaseQuantilesSpeedProfile {
+
+  private static final Random rnd = new Random();
+  private short k;
+  private int numSketches;
+  private double[] inputValues;
+  private TDigestDouble[] sketches;
+
+  long buildTimeNs;
+  long updateTimeNs;
+  long mergeTimeNs;
+  long numCentroids;
+
+  @Override
+  public void configure(final int k, final int numQueryValues, final Properties properties) {
+    this.k = (short) k;
+    numSketches = Integer.parseInt(properties.mustGet("numSketches"));
+    sketches = new TDigestDouble[numSketches];
+  }
+
+  @Override
+  public void prepareTrial(final int streamLength) {
+    // prepare input data
+    inputValues = new double[streamLength];
+    for (int i = 0; i < streamLength; i++) {
+      inputValues[i] = rnd.nextDouble();
+    }
+    resetStats();
+  }
+
+  @Override
+  public void doTrial() {
+    final long startBuild = System.nanoTime();
+    for (int i = 0; i < numSketches; i++) {
+      sketches[i] = new TDigestDouble(k);
+    }
+    final long stopBuild = System.nanoTime();
+    buildTimeNs += stopBuild - startBuild;
+
+    final long startUpdate = System.nanoTime();
+    { // spray values across all sketches
+      int i = 0;
+      for (int j = 0; j < inputValues.length; j++) {
+        sketches[i++].update(inputValues[j]);
+        if (i == numSketches) { i = 0; }
+      }
+    }
+    final long stopUpdate = System.nanoTime();
+    updateTimeNs += stopUpdate - startUpdate;
+
+    final TDigestDouble mergedSketch = new TDigestDouble(k);
+    final long startMerge = System.nanoTime();
+    for (int i = 0; i < numSketches; i++) {
+      mergedSketch.merge(sketches[i]);
+    }
+    if (!mergedSketch.isEmpty()) { mergedSketch.getRank(0.5); } //merges the buffer
+    final long stopMerge = System.nanoTime();
+    mergeTimeNs += stopMerge - startMerge;
+
+    numCentroids += TDigestUtil.getNumCentroids(mergedSketch);
+  }
+
+  @Override
+  public String getHeader() {
+    return "Stream\tTrials\tBuild\tUpdate\tMerge\tMerge/Sketch\tCentroids";
+  }
+
+  @Override
+  public String getStats(final int streamLength, final int numTrials, final int numQueryValues) {
+    return String.format("%d\t%d\t%.1f\t%.1f\t%.1f\t%.1f\t%d",
+      streamLength,
+      numTrials,
+      (double) buildTimeNs / numTrials,
+      (double) updateTimeNs / numTrials / streamLength,
+      (double) mergeTimeNs / numTrials,
+      (double) mergeTimeNs / numTrials / numSketches,
+      numCentroids / numTrials
+    );
+  }
+
+  private void resetStats() {
+    buildTimeNs = 0;
+    updateTimeNs = 0;
+    mergeTimeNs = 0;
+    numCentroids = 0;
+  }
+
+}
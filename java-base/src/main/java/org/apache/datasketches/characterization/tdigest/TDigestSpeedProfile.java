@@ -17,134 +17,152 @@
  * under the License.
  */
 
-//package org.apache.datasketches.characterization.tdigest;
-//
-//import java.util.Random;
-//
-//import org.apache.datasketches.Properties;
-//import org.apache.datasketches.characterization.quantiles.BaseQuantilesSpeedProfile;
-//
-//import com.tdunning.math.stats.TDigest;
-//
-//public class TDigestSpeedProfile extends BaseQuantilesSpeedProfile {
-//
-//  private static final Random rnd = new Random();
-//  private int k;
-//  private double[] inputValues;
-//  private int numQueryValues;
-//  private double[] rankQueryValues;
-//  private double[] quantileQueryValues;
-//
-//  long buildTimeNs;
-//  long updateTimeNs;
-//  long getRankTimeNs;
-//  long getQuantileTimeNs;
-//  long serializeTimeNs;
-//  long deserializeTimeNs;
-//  long fullSerializedSizeBytes;
-//  long smallSerializedSizeBytes;
-//  int numCentroids;
-//
-//  @Override
-//  public void configure(final int k, final int numQueryValues, final Properties properties) {
-//    this.k = k;
-//    this.numQueryValues = numQueryValues;
-//  }
-//
-//  @Override
-//  public void prepareTrial(final int streamLength) {
-//    // prepare input data
-//    inputValues = new double[streamLength];
-//    for (int i = 0; i < streamLength; i++) {
-//      inputValues[i] = rnd.nextDouble();
-//    }
-//    // prepare query data
-//    quantileQueryValues = new double[numQueryValues];
-//    for (int i = 0; i < numQueryValues; i++) {
-//      quantileQueryValues[i] = rnd.nextDouble();
-//    }
-//    rankQueryValues = new double[numQueryValues];
-//    for (int i = 0; i < numQueryValues; i++) {
-//      rankQueryValues[i] = rnd.nextDouble();
-//    }
-//    resetStats();
-//  }
-//
-//  @Override
-//  public void doTrial() {
-//    final long startBuild = System.nanoTime();
-//    final TDigest sketch = TDigest.createDigest(k);
-//    final long stopBuild = System.nanoTime();
-//    buildTimeNs += stopBuild - startBuild;
-//
-//    final long startUpdate = System.nanoTime();
-//    for (int i = 0; i < inputValues.length; i++) {
-//      sketch.add(inputValues[i]);
-//    }
-//    final long stopUpdate = System.nanoTime();
-//    updateTimeNs += stopUpdate - startUpdate;
-//
-//    final long startGetRank = System.nanoTime();
-//    for (final double value: rankQueryValues) {
-//      sketch.cdf(value);
-//    }
-//    final long stopGetRank = System.nanoTime();
-//    getRankTimeNs += stopGetRank - startGetRank;
-//
-//    final long startGetQuantile = System.nanoTime();
-//    for (final double value: quantileQueryValues) {
-//      sketch.quantile(value);
-//    }
-//    final long stopGetQuantile = System.nanoTime();
-//    getQuantileTimeNs += stopGetQuantile - startGetQuantile;
-//
-////    final long startSerialize = System.nanoTime();
-////    final byte[] bytes = sketch.asBytes(null);
-////    final long stopSerialize = System.nanoTime();
-////    serializeTimeNs += stopSerialize - startSerialize;
-//
-////    final long startDeserialize = System.nanoTime();
-////    final deserializedSketch = MergingDigest.fromBytes(bytes);
-////    final long stopDeserialize = System.nanoTime();
-////    deserializeTimeNs += stopDeserialize - startDeserialize;
-//
-//    numCentroids += sketch.centroidCount();
-//    fullSerializedSizeBytes += sketch.byteSize();
-//    smallSerializedSizeBytes += sketch.smallByteSize();
-//  }
-//
-//  @Override
-//  public String getHeader() {
-//    return "Stream\tTrials\tBuild\tUpdate\tRank\tQuant\tSer\tDeser\tCentroids\tFullSize\tSmallSize";
-//  }
-//
-//  @Override
-//  public String getStats(final int streamLength, final int numTrials, final int numQueryValues) {
-//    return String.format("%d\t%d\t%.1f\t%.1f\t%.1f\t%.1f\t%.1f\t%.1f\t%d\t%d\t%d",
-//      streamLength,
-//      numTrials,
-//      (double) buildTimeNs / numTrials,
-//      (double) updateTimeNs / numTrials / streamLength,
-//      (double) getRankTimeNs / numTrials / numQueryValues,
-//      (double) getQuantileTimeNs / numTrials / numQueryValues,
-//      (double) serializeTimeNs / numTrials,
-//      (double) deserializeTimeNs / numTrials,
-//      numCentroids / numTrials,
-//      fullSerializedSizeBytes / numTrials,
-//      smallSerializedSizeBytes / numTrials
-//    );
-//  }
-//
-//  private void resetStats() {
-//    buildTimeNs = 0;
-//    updateTimeNs = 0;
-//    getRankTimeNs = 0;
-//    getQuantileTimeNs = 0;
-//    serializeTimeNs = 0;
-//    deserializeTimeNs = 0;
-//    fullSerializedSizeBytes = 0;
-//    smallSerializedSizeBytes = 0;
-//    numCentroids = 0;
-//  }
-//
-//}
+package org.apache.datasketches.characterization.tdigest;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.datasketches.Properties;
+import org.apache.datasketches.characterization.quantiles.BaseQuantilesSpeedProfile;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.tdigest.TDigestDouble;
+
+/**
+ * Speed of the TDigestDouble with compression K for uniform random values.
+ *
+ * <p>A TDigestDouble collects updates in a buffer that is merged into the centroids when it fills
+ * up or when the sketch is queried. To compare with sketches that do all their work in update(),
+ * the update time includes merging the last buffer, forced by one getRank().</p>
+ */
+public class TDigestSpeedProfile extends BaseQuantilesSpeedProfile {
+
+  private static final Random rnd = new Random();
+  private short k;
+  private double[] inputValues;
+  private int numQueryValues;
+  private double[] rankQueryValues;
+  private double[] quantileQueryValues;
+  private double[] splitPoints;
+
+  long buildTimeNs;
+  long updateTimeNs;
+  long getRankTimeNs;
+  long getQuantileTimeNs;
+  long getCdfTimeNs;
+  long serializeTimeNs;
+  long deserializeTimeNs;
+  long numCentroids;
+  long serializedSizeBytes;
+
+  @Override
+  public void configure(final int k, final int numQueryValues, final Properties properties) {
+    this.k = (short) k;
+    this.numQueryValues = numQueryValues;
+  }
+
+  @Override
+  public void prepareTrial(final int streamLength) {
+    // prepare input data
+    inputValues = new double[streamLength];
+    for (int i = 0; i < streamLength; i++) {
+      inputValues[i] = rnd.nextDouble();
+    }
+    // prepare query data
+    quantileQueryValues = new double[numQueryValues];
+    for (int i = 0; i < numQueryValues; i++) {
+      quantileQueryValues[i] = rnd.nextDouble();
+    }
+    rankQueryValues = new double[numQueryValues];
+    for (int i = 0; i < numQueryValues; i++) {
+      rankQueryValues[i] = rnd.nextDouble();
+    }
+    splitPoints = rankQueryValues.clone();
+    Arrays.sort(splitPoints);
+    resetStats();
+  }
+
+  @Override
+  public void doTrial() {
+    final long startBuild = System.nanoTime();
+    final TDigestDouble sketch = new TDigestDouble(k);
+    final long stopBuild = System.nanoTime();
+    buildTimeNs += stopBuild - startBuild;
+
+    final long startUpdate = System.nanoTime();
+    for (int i = 0; i < inputValues.length; i++) {
+      sketch.update(inputValues[i]);
+    }
+    if (!sketch.isEmpty()) { sketch.getRank(0.5); } //merges the buffer
+    final long stopUpdate = System.nanoTime();
+    updateTimeNs += stopUpdate - startUpdate;
+
+    if (sketch.isEmpty()) { return; } //queries of an empty sketch throw
+
+    final long startGetRank = System.nanoTime();
+    for (final double value: rankQueryValues) {
+      sketch.getRank(value);
+    }
+    final long stopGetRank = System.nanoTime();
+    getRankTimeNs += stopGetRank - startGetRank;
+
+    final long startGetQuantile = System.nanoTime();
+    for (final double rank: quantileQueryValues) {
+      sketch.getQuantile(rank);
+    }
+    final long stopGetQuantile = System.nanoTime();
+    getQuantileTimeNs += stopGetQuantile - startGetQuantile;
+
+    final long startGetCdf = System.nanoTime();
+    sketch.getCDF(splitPoints);
+    final long stopGetCdf = System.nanoTime();
+    getCdfTimeNs += stopGetCdf - startGetCdf;
+
+    final long startSerialize = System.nanoTime();
+    final byte[] bytes = sketch.toByteArray();
+    final long stopSerialize = System.nanoTime();
+    serializeTimeNs += stopSerialize - startSerialize;
+
+    final long startDeserialize = System.nanoTime();
+    TDigestDouble.heapify(Memory.wrap(bytes));
+    final long stopDeserialize = System.nanoTime();
+    deserializeTimeNs += stopDeserialize - startDeserialize;
+
+    numCentroids += TDigestUtil.getNumCentroids(sketch);
+    serializedSizeBytes += bytes.length;
+  }
+
+  @Override
+  public String getHeader() {
+    return "Stream\tTrials\tBuild\tUpdate\tRank\tQuant\tCDF\tSer\tDeser\tCentroids\tSerSize";
+  }
+
+  @Override
+  public String getStats(final int streamLength, final int numTrials, final int numQueryValues) {
+    return String.format("%d\t%d\t%.1f\t%.1f\t%.1f\t%.1f\t%.1f\t%.1f\t%.1f\t%d\t%d",
+      streamLength,
+      numTrials,
+      (double) buildTimeNs / numTrials,
+      (double) updateTimeNs / numTrials / streamLength,
+      (double) getRankTimeNs / numTrials / numQueryValues,
+      (double) getQuantileTimeNs / numTrials / numQueryValues,
+      (double) getCdfTimeNs / numTrials / numQueryValues,
+      (double) serializeTimeNs / numTrials,
+      (double) deserializeTimeNs / numTrials,
+      numCentroids / numTrials,
+      serializedSizeBytes / numTrials
+    );
+  }
+
+  private void resetStats() {
+    buildTimeNs = 0;
+    updateTimeNs = 0;
+    getRankTimeNs = 0;
+    getQuantileTimeNs = 0;
+    getCdfTimeNs = 0;
+    serializeTimeNs = 0;
+    deserializeTimeNs = 0;
+    numCentroids = 0;
+    serializedSizeBytes = 0;
+  }
+
+}
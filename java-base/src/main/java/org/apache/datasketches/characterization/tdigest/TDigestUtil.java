@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.tdigest;
+
+import org.apache.datasketches.tdigest.TDigestDouble;
+
+/**
+ * Helpers for the TDigestDouble profiles.
+ */
+public final class TDigestUtil {
+  private static final String CENTROIDS = "Centroids:";
+
+  private TDigestUtil() {}
+
+  /**
+   * Gets the number of centroids of the given sketch, which is only available from toString().
+   * Values still in the buffer are not counted, so a sketch that was updated should first be
+   * compressed, e.g., by a query or by serialization.
+   * @param sketch the given sketch
+   * @return the number of centroids
+   */
+  public static int getNumCentroids(final TDigestDouble sketch) {
+    final String str = sketch.toString();
+    final int start = str.indexOf(CENTROIDS) + CENTROIDS.length();
+    return Integer.parseInt(str.substring(start, str.indexOf('\n', start)).trim());
+  }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.theta;
+
+import org.apache.datasketches.characterization.uniquecount.BaseBatchUpdateSpeedProfile;
+import org.apache.datasketches.common.Family;
+import org.apache.datasketches.common.ResizeFactor;
+import org.apache.datasketches.hash.MurmurHash3;
+import org.apache.datasketches.theta.ThetaRedirects;
+import org.apache.datasketches.theta.UpdateSketch;
+
+/**
+ * Compares per-item Theta updates against hash-then-insert batches of hashes.
+ */
+public class ThetaBatchUpdateSpeedProfile extends BaseBatchUpdateSpeedProfile {
+  private final ThetaRedirects redirects = new ThetaRedirects();
+  private final long[] key = new long[1];
+  private UpdateSketch sketch;
+  private long[] hashes;
+  private long seed;
+
+  @Override
+  public void configureSketch(final int maxBatchSize) {
+    final int lgK = Integer.parseInt(prop.mustGet("LgK"));
+    final Family family = Family.stringToFamily(prop.mustGet("THETA_famName"));
+    final float p = Float.parseFloat(prop.mustGet("THETA_p"));
+    final ResizeFactor rf = ResizeFactor.getRF(Integer.parseInt(prop.mustGet("THETA_lgRF")));
+
+    sketch = UpdateSketch.builder()
+        .setNominalEntries(1 << lgK)
+        .setFamily(family)
+        .setP(p)
+        .setResizeFactor(rf)
+        .build();
+    seed = redirects.getSeed(sketch);
+    hashes = new long[maxBatchSize];
+  }
+
+  @Override
+  public void resetSketch() {
+    sketch.reset();
+  }
+
+  @Override
+  public void updateItems(final long firstKey, final int count) {
+    final long end = firstKey + count;
+    for (long v = firstKey; v < end; v++) {
+      sketch.update(v);
+    }
+  }
+
+  @Override
+  public void hashBatch(final long firstKey, final int len) {
+    for (int i = 0; i < len; i++) {
+      key[0] = firstKey + i;
+      hashes[i] = MurmurHash3.hash(key, seed)[0] >>> 1;
+    }
+  }
+
+  @Override
+  public void insertBatch(final int len) {
+    int i = 0;
+    for (final int end4 = len & ~3; i < end4; i += 4) { //unrolled by 4
+      redirects.hashUpdate(sketch, hashes[i]);
+      redirects.hashUpdate(sketch, hashes[i + 1]);
+      redirects.hashUpdate(sketch, hashes[i + 2]);
+      redirects.hashUpdate(sketch, hashes[i + 3]);
+    }
+    for ( ; i < len; i++) {
+      redirects.hashUpdate(sketch, hashes[i]);
+    }
+  }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.theta;
+
+import org.apache.datasketches.characterization.uniquecount.BaseCorpusMergeProfile;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.theta.SetOperation;
+import org.apache.datasketches.theta.SetOperationBuilder;
+import org.apache.datasketches.theta.Sketch;
+import org.apache.datasketches.theta.Union;
+import org.apache.datasketches.theta.UpdateSketch;
+import org.apache.datasketches.theta.UpdateSketchBuilder;
+
+/**
+ * Merges a memory-mapped corpus of ordered compact Theta sketches, either directly from the
+ * Memory or via heapify.
+ */
+public class ThetaCorpusMergeProfile extends BaseCorpusMergeProfile<Union> {
+  private UpdateSketchBuilder udBldr;
+  private SetOperationBuilder soBldr;
+
+  @Override
+  public void configure() {
+    final int lgK = Integer.parseInt(prop.mustGet("LgK"));
+    udBldr = UpdateSketch.builder().setNominalEntries(1 << lgK);
+    soBldr = SetOperation.builder().setNominalEntries(1 << lgK);
+  }
+
+  @Override
+  public byte[] newSerializedSketch(final int uPerSketch) {
+    final UpdateSketch sketch = udBldr.build();
+    for (int u = uPerSketch; u-- > 0;) {
+      sketch.update(++vIn);
+    }
+    return sketch.compact(true, null).toByteArray();
+  }
+
+  @Override
+  public Union newUnion() {
+    return soBldr.buildUnion();
+  }
+
+  @Override
+  public void mergeWrapped(final Union union, final Memory mem) {
+    union.union(mem);
+  }
+
+  @Override
+  public void mergeHeapified(final Union union, final Memory mem) {
+    union.union(Sketch.heapify(mem));
+  }
+
+  @Override
+  public void combine(final Union target, final Union source) {
+    target.union(source.getResult());
+  }
+
+  @Override
+  public double getEstimate(final Union union) {
+    return union.getResult().getEstimate();
+  }
+
+}
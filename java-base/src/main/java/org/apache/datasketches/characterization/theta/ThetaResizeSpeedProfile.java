@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.theta;
+
+import org.apache.datasketches.Job;
+import org.apache.datasketches.JobProfile;
+import org.apache.datasketches.Properties;
+import org.apache.datasketches.common.Family;
+import org.apache.datasketches.common.ResizeFactor;
+import org.apache.datasketches.theta.UpdateSketch;
+
+/**
+ * Measures the cost of the individual hash table resize and rebuild events of a heap Theta
+ * UpdateSketch, which the mean update time of ThetaUpdateSpeedProfile smears across many updates.
+ *
+ * <p>Each update is timed on its own. A resize is detected by a change in getCurrentBytes() and a
+ * rebuild by a drop in getRetainedEntries(false), which only a rebuild causes, e.g., from about
+ * 15/16 of the table down to K entries for QuickSelect. A change in theta does not mark a rebuild,
+ * since the Alpha sketch lowers theta on almost every accepted update. The cost of every event
+ * is recorded separately from the cost of the ordinary updates. A second, untimed-per-update pass
+ * over the same stream gives the amortized cost per update.</p>
+ *
+ * <p>One row is output for every combination of LgK from Sweep_lgMinK to Sweep_lgMaxK, resize
+ * factor from the list Sweep_lgRF and sampling probability from the list Sweep_p.</p>
+ */
+public class ThetaResizeSpeedProfile implements JobProfile {
+  private Job job;
+  private Properties prop;
+  private long vIn = 0;
+  private Family family;
+  private int lgT;
+  private int lgU;
+
+  //Per configuration accumulators
+  private long numResizes;
+  private long numRebuilds;
+  private long sumResize_nS;
+  private long maxResize_nS;
+  private long sumRebuild_nS;
+  private long maxRebuild_nS;
+  private long sumOther_nS;
+  private long numOther;
+  private long sumAmortized_nS;
+  private int peakBytes;
+
+  //JobProfile
+  @Override
+  public void start(final Job job) {
+    this.job = job;
+    prop = job.getProperties();
+    family = Family.stringToFamily(prop.mustGet("THETA_famName"));
+    lgT = Integer.parseInt(prop.mustGet("Trials_lgT"));
+    lgU = Integer.parseInt(prop.mustGet("Trials_lgU"));
+    doSweep();
+    shutdown();
+    cleanup();
+  }
+
+  @Override
+  public void shutdown() {}
+
+  @Override
+  public void cleanup() {}
+  //end JobProfile
+
+  private void doSweep() {
+    final int lgMinK = Integer.parseInt(prop.mustGet("Sweep_lgMinK"));
+    final int lgMaxK = Integer.parseInt(prop.mustGet("Sweep_lgMaxK"));
+    final String[] lgRFs = prop.mustGet("Sweep_lgRF").split(",");
+    final String[] ps = prop.mustGet("Sweep_p").split(",");
+    final StringBuilder dataStr = new StringBuilder();
+    job.println(getHeader());
+    for (int lgK = lgMinK; lgK <= lgMaxK; lgK++) {
+      for (int r = 0; r < lgRFs.length; r++) {
+        final ResizeFactor rf = ResizeFactor.getRF(Integer.parseInt(lgRFs[r].trim()));
+        for (int i = 0; i < ps.length; i++) {
+          final float p = Float.parseFloat(ps[i].trim());
+          final UpdateSketch sketch = UpdateSketch.builder()
+              .setNominalEntries(1 << lgK)
+              .setFamily(family)
+              .setP(p)
+              .setResizeFactor(rf)
+              .build();
+          doTrials(sketch);
+          process(lgK, rf, p, dataStr);
+        }
+      }
+    }
+  }
+
+  private void doTrials(final UpdateSketch sketch) {
+    numResizes = numRebuilds = 0;
+    sumResize_nS = maxResize_nS = 0;
+    sumRebuild_nS = maxRebuild_nS = 0;
+    sumOther_nS = numOther = 0;
+    sumAmortized_nS = 0;
+    peakBytes = 0;
+    final int trials = 1 << lgT;
+    final int u = 1 << lgU;
+    for (int t = 0; t < trials; t++) {
+      final long base = vIn;
+      vIn += u;
+
+      //Per update timing with event detection
+      sketch.reset();
+      int lastBytes = sketch.getCurrentBytes();
+      int lastRetained = sketch.getRetainedEntries(false);
+      peakBytes = Math.max(peakBytes, lastBytes);
+      for (int j = 0; j < u; j++) {
+        final long startUpdateTime_nS = System.nanoTime();
+        sketch.update(base + j);
+        final long time_nS = System.nanoTime() - startUpdateTime_nS;
+
+        final int bytes = sketch.getCurrentBytes();
+        final int retained = sketch.getRetainedEntries(false);
+        if (bytes != lastBytes) {
+          numResizes++;
+          sumResize_nS += time_nS;
+          maxResize_nS = Math.max(maxResize_nS, time_nS);
+          peakBytes = Math.max(peakBytes, bytes);
+          lastBytes = bytes;
+        } else if (retained < lastRetained) {
+          numRebuilds++;
+          sumRebuild_nS += time_nS;
+          maxRebuild_nS = Math.max(maxRebuild_nS, time_nS);
+        } else {
+          numOther++;
+          sumOther_nS += time_nS;
+        }
+        lastRetained = retained;
+      }
+
+      //Amortized timing of the same stream, without the per update overhead
+      sketch.reset();
+      final long startAmortizedTime_nS = System.nanoTime();
+      for (int j = 0; j < u; j++) {
+        sketch.update(base + j);
+      }
+      sumAmortized_nS += System.nanoTime() - startAmortizedTime_nS;
+    }
+  }
+
+  private void process(final int lgK, final ResizeFactor rf, final float p,
+      final StringBuilder dataStr) {
+    final int trials = 1 << lgT;
+    final long totalU = (long) trials << lgU;
+    final double other_nS = numOther == 0 ? 0 : (double) sumOther_nS / numOther;
+    final double resize_nS = numResizes == 0 ? 0 : (double) sumResize_nS / numResizes;
+    final double rebuild_nS = numRebuilds == 0 ? 0 : (double) sumRebuild_nS / numRebuilds;
+    final double eventFraction = (double) (sumResize_nS + sumRebuild_nS)
+        / (sumResize_nS + sumRebuild_nS + sumOther_nS);
+
+    //OUTPUT
+    dataStr.setLength(0);
+    dataStr.append(lgK).append(TAB);
+    dataStr.append(rf.name()).append(TAB);
+    dataStr.append(p).append(TAB);
+    dataStr.append(1 << lgU).append(TAB);
+    dataStr.append(trials).append(TAB);
+    dataStr.append((double) numResizes / trials).append(TAB);
+    dataStr.append((double) numRebuilds / trials).append(TAB);
+    dataStr.append(resize_nS).append(TAB);
+    dataStr.append(maxResize_nS).append(TAB);
+    dataStr.append(rebuild_nS).append(TAB);
+    dataStr.append(maxRebuild_nS).append(TAB);
+    dataStr.append(other_nS).append(TAB);
+    dataStr.append((double) sumAmortized_nS / totalU).append(TAB);
+    dataStr.append(eventFraction).append(TAB);
+    dataStr.append(peakBytes);
+    job.println(dataStr.toString());
+  }
+
+  private static String getHeader() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("LgK").append(TAB);
+    sb.append("RF").append(TAB);
+    sb.append("P").append(TAB);
+    sb.append("U").append(TAB);
+    sb.append("Trials").append(TAB);
+    sb.append("Resizes").append(TAB);
+    sb.append("Rebuilds").append(TAB);
+    sb.append("Resize_nS").append(TAB);
+    sb.append("MaxResize_nS").append(TAB);
+    sb.append("Rebuild_nS").append(TAB);
+    sb.append("MaxRebuild_nS").append(TAB);
+    sb.append("Update_nS").append(TAB);
+    sb.append("Amortized_nS/u").append(TAB);
+    sb.append("EventTimeFraction").append(TAB);
+    sb.append("PeakBytes");
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.theta;
+
+import org.apache.datasketches.Job;
+import org.apache.datasketches.JobProfile;
+import org.apache.datasketches.Properties;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.theta.AnotB;
+import org.apache.datasketches.theta.CompactSketch;
+import org.apache.datasketches.theta.Intersection;
+import org.apache.datasketches.theta.SetOperation;
+import org.apache.datasketches.theta.SetOperationBuilder;
+import org.apache.datasketches.theta.Sketch;
+import org.apache.datasketches.theta.Union;
+import org.apache.datasketches.theta.UpdateSketch;
+import org.apache.datasketches.theta.UpdateSketchBuilder;
+
+/**
+ * Speed of N-way Theta set operations over compact input sketches.
+ *
+ * <p>The operations, selected by the list SetOp_ops, are:</p>
+ * <ul>
+ * <li>UNION, INTERSECTION, ANOTB: stateful, one new set operation per expression that is fed all
+ * N inputs, followed by getResult().</li>
+ * <li>UNION_STATELESS, INTERSECTION_STATELESS, ANOTB_STATELESS: the expression is evaluated as a
+ * left-deep chain of N - 1 stateless two-argument operations.</li>
+ * </ul>
+ *
+ * <p>Each input gets SetOp_uPerSketch uniques, of which the fraction given by the overlap is shared
+ * by all inputs. The inputs are either ordered or unordered, and either heap CompactSketches or
+ * sketches wrapped around their serialized images.</p>
+ *
+ * <p>A row is output for every number of inputs from 2^SetOp_lgMinInputs to 2^SetOp_lgMaxInputs,
+ * overlap in SetOp_overlap, ordering in SetOp_ordered, input form in SetOp_wrapped and operation.
+ * It reports the time per expression, per input and per retained entry of the inputs.</p>
+ */
+public class ThetaSetOpSpeedProfile implements JobProfile {
+  private Job job;
+  private Properties prop;
+  private long vIn = 0;
+  private int lgK;
+  private int lgT;
+  private int uPerSketch;
+  private UpdateSketchBuilder sketchBuilder;
+  private SetOperationBuilder setOpBuilder;
+
+  //JobProfile
+  @Override
+  public void start(final Job job) {
+    this.job = job;
+    prop = job.getProperties();
+    lgK = Integer.parseInt(prop.mustGet("LgK"));
+    lgT = Integer.parseInt(prop.mustGet("Trials_lgT"));
+    uPerSketch = Integer.parseInt(prop.mustGet("SetOp_uPerSketch"));
+    sketchBuilder = UpdateSketch.builder().setNominalEntries(1 << lgK);
+    setOpBuilder = SetOperation.builder().setNominalEntries(1 << lgK);
+    doSweep();
+    shutdown();
+    cleanup();
+  }
+
+  @Override
+  public void shutdown() {}
+
+  @Override
+  public void cleanup() {}
+  //end JobProfile
+
+  private void doSweep() {
+    final int lgMinInputs = Integer.parseInt(prop.mustGet("SetOp_lgMinInputs"));
+    final int lgMaxInputs = Integer.parseInt(prop.mustGet("SetOp_lgMaxInputs"));
+    final String[] overlaps = prop.mustGet("SetOp_overlap").split(",");
+    final String[] orderings = prop.mustGet("SetOp_ordered").split(",");
+    final String[] forms = prop.mustGet("SetOp_wrapped").split(",");
+    final String[] ops = prop.mustGet("SetOp_ops").split(",");
+    final StringBuilder dataStr = new StringBuilder();
+    job.println(getHeader());
+    for (int lgN = lgMinInputs; lgN <= lgMaxInputs; lgN++) {
+      final int numInputs = 1 << lgN;
+      for (int i = 0; i < overlaps.length; i++) {
+        final double overlap = Double.parseDouble(overlaps[i].trim());
+        final UpdateSketch[] sources = buildSources(numInputs, overlap);
+        for (int j = 0; j < orderings.length; j++) {
+          final boolean ordered = Boolean.parseBoolean(orderings[j].trim());
+          for (int f = 0; f < forms.length; f++) {
+            final boolean wrapped = Boolean.parseBoolean(forms[f].trim());
+            final Sketch[] inputs = new Sketch[numInputs];
+            long retained = 0;
+            for (int s = 0; s < numInputs; s++) {
+              final CompactSketch csk = sources[s].compact(ordered, null);
+              inputs[s] = wrapped ? Sketch.wrap(Memory.wrap(csk.toByteArray())) : csk;
+              retained += csk.getRetainedEntries(true);
+            }
+            for (int o = 0; o < ops.length; o++) {
+              final String op = ops[o].trim().toUpperCase();
+              doTrials(op, inputs, retained, overlap, ordered, wrapped, dataStr);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private UpdateSketch[] buildSources(final int numInputs, final double overlap) {
+    final int common = (int) Math.round(overlap * uPerSketch);
+    final long commonBase = vIn;
+    vIn += common;
+    final UpdateSketch[] sources = new UpdateSketch[numInputs];
+    for (int s = 0; s < numInputs; s++) {
+      final UpdateSketch sk = sketchBuilder.build();
+      for (int u = 0; u < common; u++) { sk.update(commonBase + u); }
+      for (int u = common; u < uPerSketch; u++) { sk.update(++vIn); }
+      sources[s] = sk.rebuild();
+    }
+    return sources;
+  }
+
+  private void doTrials(final String op, final Sketch[] inputs, final long retained,
+      final double overlap, final boolean ordered, final boolean wrapped, final StringBuilder dataStr) {
+    final int trials = 1 << lgT;
+    CompactSketch result = evaluate(op, inputs); //warm up
+    final long startTime_nS = System.nanoTime();
+    for (int t = 0; t < trials; t++) {
+      result = evaluate(op, inputs);
+    }
+    final double opTime_nS = (double) (System.nanoTime() - startTime_nS) / trials;
+
+    //OUTPUT
+    dataStr.setLength(0);
+    dataStr.append(op).append(TAB);
+    dataStr.append(inputs.length).append(TAB);
+    dataStr.append(overlap).append(TAB);
+    dataStr.append(ordered).append(TAB);
+    dataStr.append(wrapped ? "Wrap" : "Heap").append(TAB);
+    dataStr.append(trials).append(TAB);
+    dataStr.append(retained).append(TAB);
+    dataStr.append(opTime_nS).append(TAB);
+    dataStr.append(opTime_nS / inputs.length).append(TAB);
+    dataStr.append(opTime_nS / retained).append(TAB);
+    dataStr.append(result.getRetainedEntries(true)).append(TAB);
+    dataStr.append(result.getEstimate());
+    job.println(dataStr.toString());
+  }
+
+  private CompactSketch evaluate(final String op, final Sketch[] inputs) {
+    final int n = inputs.length;
+    switch (op) {
+      case "UNION": {
+        final Union union = setOpBuilder.buildUnion();
+        for (int i = 0; i < n; i++) { union.union(inputs[i]); }
+        return union.getResult();
+      }
+      case "UNION_STATELESS": {
+        final Union union = setOpBuilder.buildUnion();
+        CompactSketch result = union.union(inputs[0], inputs[1]);
+        for (int i = 2; i < n; i++) { result = union.union(result, inputs[i]); }
+        return result;
+      }
+      case "INTERSECTION": {
+        final Intersection inter = setOpBuilder.buildIntersection();
+        for (int i = 0; i < n; i++) { inter.intersect(inputs[i]); }
+        return inter.getResult();
+      }
+      case "INTERSECTION_STATELESS": {
+        final Intersection inter = setOpBuilder.buildIntersection();
+        CompactSketch result = inter.intersect(inputs[0], inputs[1]);
+        for (int i = 2; i < n; i++) { result = inter.intersect(result, inputs[i]); }
+        return result;
+      }
+      case "ANOTB": {
+        final AnotB aNotB = setOpBuilder.buildANotB();
+        aNotB.setA(inputs[0]);
+        for (int i = 1; i < n; i++) { aNotB.notB(inputs[i]); }
+        return aNotB.getResult(true);
+      }
+      case "ANOTB_STATELESS": {
+        final AnotB aNotB = setOpBuilder.buildANotB();
+        CompactSketch result = aNotB.aNotB(inputs[0], inputs[1]);
+        for (int i = 2; i < n; i++) { result = aNotB.aNotB(result, inputs[i]); }
+        return result;
+      }
+      default: throw new IllegalArgumentException("Unknown set operation: " + op);
+    }
+  }
+
+  private static String getHeader() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("Op").append(TAB);
+    sb.append("Inputs").append(TAB);
+    sb.append("Overlap").append(TAB);
+    sb.append("Ordered").append(TAB);
+    sb.append("Form").append(TAB);
+    sb.append("Trials").append(TAB);
+    sb.append("InputEntries").append(TAB);
+    sb.append("nS/Op").append(TAB);
+    sb.append("nS/Input").append(TAB);
+    sb.append("nS/Entry").append(TAB);
+    sb.append("ResultEntries").append(TAB);
+    sb.append("ResultEst");
+    return sb.toString();
+  }
+
+}
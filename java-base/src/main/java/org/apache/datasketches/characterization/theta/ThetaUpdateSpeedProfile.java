@@ -20,19 +20,29 @@
 package org.apache.datasketches.characterization.theta;
 
 import org.apache.datasketches.characterization.uniquecount.BaseUpdateSpeedProfile;
+import org.apache.datasketches.characterization.uniquecount.PreHashedTrials;
 import org.apache.datasketches.common.Family;
 import org.apache.datasketches.common.ResizeFactor;
+import org.apache.datasketches.hash.MurmurHash3;
 import org.apache.datasketches.memory.WritableMemory;
 import org.apache.datasketches.theta.Sketch;
+import org.apache.datasketches.theta.ThetaRedirects;
 import org.apache.datasketches.theta.UpdateSketch;
 import org.apache.datasketches.theta.UpdateSketchBuilder;
 
 /**
+ * With PreHashed=true the keys are hashed into a long[] buffer before the insert is timed,
+ * which separates the cost of MurmurHash3 from the cost of the hash table update.
+ *
  * @author Lee Rhodes
  */
-public class ThetaUpdateSpeedProfile extends BaseUpdateSpeedProfile {
+public class ThetaUpdateSpeedProfile extends BaseUpdateSpeedProfile implements PreHashedTrials {
+  private final ThetaRedirects redirects = new ThetaRedirects();
+  private final long[] key = new long[1];
   protected UpdateSketch sketch;
   private WritableMemory wmem;
+  private long[] hashes;
+  private long seed;
 
   @Override
   public void configure() {
@@ -56,6 +66,7 @@ public class ThetaUpdateSpeedProfile extends BaseUpdateSpeedProfile {
     } else {
       sketch = udBldr.build();
     }
+    seed = redirects.getSeed(sketch);
   }
 
   @Override
@@ -70,4 +81,37 @@ public class ThetaUpdateSpeedProfile extends BaseUpdateSpeedProfile {
     return (double) updateTime_nS / uPerTrial;
   }
 
+  @Override
+  public double doHashTrial(final int uPerTrial) {
+    if (hashes == null || hashes.length < uPerTrial) { hashes = new long[uPerTrial]; }
+    final long startHashTime_nS = System.nanoTime();
+
+    for (int u = 0; u < uPerTrial; u++) {
+      key[0] = ++vIn;
+      hashes[u] = MurmurHash3.hash(key, seed)[0] >>> 1;
+    }
+    final long hashTime_nS = System.nanoTime() - startHashTime_nS;
+    return (double) hashTime_nS / uPerTrial;
+  }
+
+  @Override
+  public double doInsertTrial(final int uPerTrial) {
+    sketch.reset(); // reuse the same sketch
+    final long startInsertTime_nS = System.nanoTime();
+
+    for (int u = 0; u < uPerTrial; u++) {
+      insertHash(hashes[u]);
+    }
+    final long insertTime_nS = System.nanoTime() - startInsertTime_nS;
+    return (double) insertTime_nS / uPerTrial;
+  }
+
+  /**
+   * Inserts one hash of the PreHashed mode into the sketch.
+   * @param hash the hash of a key
+   */
+  protected void insertHash(final long hash) {
+    redirects.hashUpdate(sketch, hash);
+  }
+
 }
@@ -21,10 +21,14 @@ package org.apache.datasketches.characterization.theta.concurrent;
 
 import static org.apache.datasketches.thetacommon.ThetaUtil.DEFAULT_UPDATE_SEED;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.datasketches.characterization.concurrent.ConcurrentTestContext;
 import org.apache.datasketches.characterization.concurrent.ConcurrentTestThread;
+import org.apache.datasketches.characterization.concurrent.PhasedTestContext;
 import org.apache.datasketches.characterization.uniquecount.BaseUpdateSpeedProfile;
 import org.apache.datasketches.memory.WritableMemory;
 import org.apache.datasketches.theta.Sketch;
@@ -34,6 +38,10 @@ import org.apache.datasketches.theta.UpdateSketchBuilder;
 /**
  * Test scalability of concurrent theta sketch - test with multiple writers/readers
  *
+ * <p>CONCURRENT_THETA_framework selects the thread driver: LEGACY uses ConcurrentTestContext, whose
+ * idle threads busy-spin, PHASED uses PhasedTestContext, whose idle threads are parked. Running the
+ * same job with both allows the results of the two drivers to be compared.</p>
+ *
  * @author eshcar
  */
 public class ConcurrentThetaMultithreadedSpeedProfile extends BaseUpdateSpeedProfile {
@@ -53,6 +61,8 @@ public class ConcurrentThetaMultithreadedSpeedProfile extends BaseUpdateSpeedPro
   private double writesRatio;
   private boolean isThreadSafe;
   private ConcurrentTestContext ctx;
+  private PhasedTestContext phasedCtx;
+  private final List<PhasedWriter> phasedWriters = new ArrayList<>();
 
   /**
    * Configure the sketch
@@ -70,6 +80,8 @@ public class ConcurrentThetaMultithreadedSpeedProfile extends BaseUpdateSpeedPro
     numWriterThreads = Integer.parseInt(prop.mustGet("CONCURRENT_THETA_numWriters"));
     writesRatio = Double.parseDouble(prop.mustGet("CONCURRENT_THETA_writersRatio"));
     isThreadSafe = Boolean.parseBoolean(prop.mustGet("CONCURRENT_THETA_ThreadSafe"));
+    final String framework = prop.get("CONCURRENT_THETA_framework");
+    final boolean phased = (framework != null) && framework.equalsIgnoreCase("PHASED");
 
     final int maxSharedUpdateBytes = Sketch.getMaxUpdateSketchBytes(1 << sharedLgK);
 
@@ -85,6 +97,10 @@ public class ConcurrentThetaMultithreadedSpeedProfile extends BaseUpdateSpeedPro
       sharedSketch = bldr.build();
       lock = new ReentrantReadWriteLock();
     }
+    if (phased) {
+      configurePhased(bldr);
+      return;
+    }
     ctx = new ConcurrentTestContext();
     for (int i = 0; i < numWriterThreads; i++) {
       final WriterThread writer;
@@ -112,10 +128,23 @@ public class ConcurrentThetaMultithreadedSpeedProfile extends BaseUpdateSpeedPro
       }
       ctx.addReaderThread(reader);
     }
-
     ctx.startThreads();
   }
 
+  //PHASED: plain tasks run by the parked threads of the PhasedTestContext
+  private void configurePhased(final UpdateSketchBuilder bldr) {
+    phasedCtx = new PhasedTestContext();
+    for (int i = 0; i < numWriterThreads; i++) {
+      final PhasedWriter writer = new PhasedWriter(isThreadSafe ? bldr.buildLocal(sharedSketch) : sharedSketch, i);
+      phasedWriters.add(writer);
+      phasedCtx.addWriterThread(writer);
+    }
+    for (int i = 0; i < numReaderThreads; i++) {
+      phasedCtx.addReaderThread(new PhasedReader());
+    }
+    phasedCtx.startThreads();
+  }
+
   /**
    * Return the average update time per update for this trial
    *
@@ -126,6 +155,11 @@ public class ConcurrentThetaMultithreadedSpeedProfile extends BaseUpdateSpeedPro
   public double doTrial(final int uPerTrial) {
     //reuse the same sketches
     sharedSketch.reset(); // reset shared sketch first
+    if (phasedCtx != null) {
+      for (final PhasedWriter writer : phasedWriters) { writer.reset(); } // reset local sketches
+      phasedCtx.doTrial(uPerTrial);
+      return (double) phasedCtx.getTotalTimeNS() / phasedCtx.getNumWrites();
+    }
     ctx.reset();  // reset local sketches
 
     ctx.doTrial(uPerTrial);
@@ -152,7 +186,11 @@ public class ConcurrentThetaMultithreadedSpeedProfile extends BaseUpdateSpeedPro
   @Override
   public void cleanup() {
     sharedSketch.reset();
-    ctx.stopAllThreads();
+    if (phasedCtx != null) {
+      phasedCtx.stopAllThreads();
+    } else {
+      ctx.stopAllThreads();
+    }
   }
 
   protected boolean doSomethingWithEstimate(final double est) {
@@ -167,6 +205,79 @@ public class ConcurrentThetaMultithreadedSpeedProfile extends BaseUpdateSpeedPro
     return  lock.readLock();
   }
 
+  /**
+   * PHASED writer of the local sketch, or of the shared sketch under the write lock if not thread safe.
+   * If CONCURRENT_THETA_writersRatio is not zero it also reads, as ReaderWriterThread does.
+   */
+  private final class PhasedWriter implements Runnable {
+    private final UpdateSketch local;
+    private final long start;
+    private long i;
+    private double reads;
+
+    PhasedWriter(final UpdateSketch local, final long start) {
+      this.local = local;
+      this.start = start;
+      i = start;
+    }
+
+    @Override
+    public void run() {
+      final double writes = (double) i / numWriterThreads;
+      if ((writesRatio != 0) && ((writes / (writes + reads)) >= writesRatio)) {
+        if (isThreadSafe) {
+          doSomethingWithEstimate(sharedSketch.getEstimate());
+        } else {
+          getReadLock().lock();
+          try {
+            doSomethingWithEstimate(sharedSketch.getEstimate());
+          } finally {
+            getReadLock().unlock();
+          }
+        }
+        reads++;
+        return;
+      }
+      if (isThreadSafe) {
+        local.update(i);
+      } else {
+        getWriteLock().lock();
+        try {
+          local.update(i);
+        } finally {
+          getWriteLock().unlock();
+        }
+      }
+      i += numWriterThreads;
+    }
+
+    void reset() {
+      local.reset();
+      i = start;
+      reads = 0;
+    }
+  }
+
+  /**
+   * PHASED background reader of the shared sketch, under the read lock if not thread safe.
+   */
+  private final class PhasedReader implements Runnable {
+    @Override
+    public void run() {
+      LockSupport.parkNanos(1_000_000L);
+      if (isThreadSafe) {
+        doSomethingWithEstimate(sharedSketch.getEstimate());
+      } else {
+        getReadLock().lock();
+        try {
+          doSomethingWithEstimate(sharedSketch.getEstimate());
+        } finally {
+          getReadLock().unlock();
+        }
+      }
+    }
+  }
+
   /**
    * Thread safe writer
    */
@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.theta.concurrent;
+
+import static org.apache.datasketches.thetacommon.ThetaUtil.DEFAULT_UPDATE_SEED;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.datasketches.Job;
+import org.apache.datasketches.JobProfile;
+import org.apache.datasketches.Properties;
+import org.apache.datasketches.characterization.concurrent.PhasedTestContext;
+import org.apache.datasketches.kll.KllDoublesSketch;
+import org.apache.datasketches.theta.UpdateSketch;
+import org.apache.datasketches.theta.UpdateSketchBuilder;
+
+/**
+ * Measures how stale the readers' view of a concurrent theta sketch is while writers are updating it.
+ *
+ * <p>Writers count every update in a striped LongAdder, the true count. Every
+ * Staleness_readInterval_uS each reader samples the time, the true count and the shared estimate.
+ * From the samples two distributions are collected with KLL sketches:</p>
+ * <ul>
+ * <li>RelLag: (true count - estimate) / true count, clipped at zero.</li>
+ * <li>Visibility: the time from when the true count first reached the estimate until the sample,
+ * i.e., how old the newest update reflected in the estimate is.</li>
+ * </ul>
+ *
+ * <p>One row is output for every combination of the lists Sweep_localLgK and
+ * Sweep_maxConcurrencyError, together with the write throughput. CONCURRENT_THETA_poolThreads is a
+ * single value because the propagation service is a singleton whose executors are sized by the
+ * first concurrent sketch built in the JVM.</p>
+ */
+public class ConcurrentThetaStalenessProfile implements JobProfile {
+  private static final double[] RANKS = {0.5, 0.9, 0.99};
+  private Job job;
+  private Properties prop;
+  private long vIn = 0;
+  private int sharedLgK;
+  private boolean ordered;
+  private int numWriterThreads;
+  private int numReaderThreads;
+  private int poolThreads;
+  private int lgT;
+  private int lgU;
+  private long readInterval_nS;
+  private int maxSamples;
+  private final LongAdder trueCount = new LongAdder();
+  private UpdateSketch sharedSketch;
+
+  //JobProfile
+  @Override
+  public void start(final Job job) {
+    this.job = job;
+    prop = job.getProperties();
+    sharedLgK = Integer.parseInt(prop.mustGet("LgK"));
+    ordered = Boolean.parseBoolean(prop.mustGet("CONCURRENT_THETA_ordered"));
+    numWriterThreads = Integer.parseInt(prop.mustGet("CONCURRENT_THETA_numWriters"));
+    numReaderThreads = Integer.parseInt(prop.mustGet("CONCURRENT_THETA_numReaders"));
+    poolThreads = Integer.parseInt(prop.mustGet("CONCURRENT_THETA_poolThreads"));
+    lgT = Integer.parseInt(prop.mustGet("Trials_lgT"));
+    lgU = Integer.parseInt(prop.mustGet("Staleness_lgU"));
+    readInterval_nS = Long.parseLong(prop.mustGet("Staleness_readInterval_uS")) * 1000L;
+    maxSamples = Integer.parseInt(prop.mustGet("Staleness_maxSamples"));
+    doSweep();
+    shutdown();
+    cleanup();
+  }
+
+  @Override
+  public void shutdown() {}
+
+  @Override
+  public void cleanup() {}
+  //end JobProfile
+
+  private void doSweep() {
+    final String[] localLgKs = prop.mustGet("Sweep_localLgK").split(",");
+    final String[] errors = prop.mustGet("Sweep_maxConcurrencyError").split(",");
+    final StringBuilder dataStr = new StringBuilder();
+    job.println(getHeader());
+    for (int i = 0; i < localLgKs.length; i++) {
+      final int localLgK = Integer.parseInt(localLgKs[i].trim());
+      for (int e = 0; e < errors.length; e++) {
+        final double maxConcurrencyError = Double.parseDouble(errors[e].trim());
+        doTrials(localLgK, maxConcurrencyError, dataStr);
+      }
+    }
+  }
+
+  private void doTrials(final int localLgK, final double maxConcurrencyError, final StringBuilder dataStr) {
+    final UpdateSketchBuilder bldr = new UpdateSketchBuilder();
+    bldr.setNumPoolThreads(poolThreads);
+    bldr.setLogNominalEntries(sharedLgK);
+    bldr.setLocalLogNominalEntries(localLgK);
+    bldr.setSeed(DEFAULT_UPDATE_SEED);
+    bldr.setPropagateOrderedCompact(ordered);
+    bldr.setMaxConcurrencyError(maxConcurrencyError);
+    bldr.setMaxNumLocalThreads(numWriterThreads);
+    sharedSketch = bldr.buildShared();
+
+    final PhasedTestContext ctx = new PhasedTestContext();
+    final WriterOp[] writers = new WriterOp[numWriterThreads];
+    for (int w = 0; w < numWriterThreads; w++) {
+      writers[w] = new WriterOp(bldr.buildLocal(sharedSketch), w);
+      ctx.addWriterThread(writers[w]);
+    }
+    final ReaderOp[] readers = new ReaderOp[numReaderThreads];
+    for (int r = 0; r < numReaderThreads; r++) {
+      readers[r] = new ReaderOp();
+      ctx.addReaderThread(readers[r]);
+    }
+    ctx.startThreads();
+
+    final KllDoublesSketch relLag = KllDoublesSketch.newHeapInstance();
+    final KllDoublesSketch visibility_uS = KllDoublesSketch.newHeapInstance();
+    final int trials = 1 << lgT;
+    final int uPerTrial = 1 << lgU;
+    long sumTime_nS = 0;
+    long sumWrites = 0;
+    for (int t = 0; t < trials; t++) {
+      sharedSketch.reset();
+      trueCount.reset();
+      for (final WriterOp writer : writers) { writer.reset(vIn); }
+      for (final ReaderOp reader : readers) { reader.reset(); }
+      vIn += uPerTrial;
+
+      ctx.doTrial(uPerTrial);
+      sumTime_nS += ctx.getTotalTimeNS();
+      sumWrites += ctx.getNumWrites();
+      processSamples(readers, relLag, visibility_uS);
+    }
+    ctx.stopAllThreads();
+    sharedSketch.reset();
+
+    final double writeTimePerU_nS = (double) sumTime_nS / sumWrites;
+
+    //OUTPUT
+    dataStr.setLength(0);
+    dataStr.append(localLgK).append(TAB);
+    dataStr.append(poolThreads).append(TAB);
+    dataStr.append(maxConcurrencyError).append(TAB);
+    dataStr.append(numWriterThreads).append(TAB);
+    dataStr.append(numReaderThreads).append(TAB);
+    dataStr.append(trials).append(TAB);
+    dataStr.append(uPerTrial).append(TAB);
+    dataStr.append(writeTimePerU_nS).append(TAB);
+    dataStr.append(1E9 / writeTimePerU_nS).append(TAB);
+    dataStr.append(relLag.getN()).append(TAB);
+    appendQuantiles(relLag, dataStr);
+    dataStr.append(TAB);
+    appendQuantiles(visibility_uS, dataStr);
+    job.println(dataStr.toString());
+  }
+
+  /**
+   * Merges the samples of all readers into one timeline ordered by time, and uses the true counts of
+   * that timeline to find when each sampled estimate was first reached by the writers.
+   */
+  private static void processSamples(final ReaderOp[] readers, final KllDoublesSketch relLag,
+      final KllDoublesSketch visibility_uS) {
+    int n = 0;
+    for (final ReaderOp reader : readers) { n += reader.numSamples; }
+    if (n == 0) { return; }
+    final long[][] samples = new long[n][];
+    int idx = 0;
+    for (final ReaderOp reader : readers) {
+      for (int i = 0; i < reader.numSamples; i++) {
+        samples[idx++] = new long[] {reader.times_nS[i], reader.trues[i]};
+      }
+    }
+    Arrays.sort(samples, (a, b) -> Long.compare(a[0], b[0]));
+    final long[] timeline_nS = new long[n];
+    final long[] timelineTrue = new long[n];
+    long maxTrue = 0;
+    for (int i = 0; i < n; i++) {
+      timeline_nS[i] = samples[i][0];
+      maxTrue = Math.max(maxTrue, samples[i][1]); //keeps the timeline monotonic
+      timelineTrue[i] = maxTrue;
+    }
+    for (final ReaderOp reader : readers) {
+      for (int i = 0; i < reader.numSamples; i++) {
+        final long trueN = reader.trues[i];
+        if (trueN == 0) { continue; }
+        final double est = reader.estimates[i];
+        relLag.update(Math.max(0.0, (trueN - est) / trueN));
+        //first point on the timeline where the true count reached the estimate
+        int pos = Arrays.binarySearch(timelineTrue, (long) Math.ceil(est));
+        if (pos < 0) { pos = -pos - 1; }
+        while ((pos > 0) && (timelineTrue[pos - 1] >= est)) { pos--; }
+        final long lag_nS = (pos < n) ? reader.times_nS[i] - timeline_nS[pos] : 0;
+        visibility_uS.update(Math.max(0, lag_nS) / 1000.0);
+      }
+    }
+  }
+
+  private static void appendQuantiles(final KllDoublesSketch sk, final StringBuilder sb) {
+    for (int i = 0; i < RANKS.length; i++) {
+      sb.append(sk.isEmpty() ? 0 : sk.getQuantile(RANKS[i])).append(TAB);
+    }
+    sb.append(sk.isEmpty() ? 0 : sk.getMaxItem());
+  }
+
+  private static String getHeader() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("LocalLgK").append(TAB);
+    sb.append("PoolThreads").append(TAB);
+    sb.append("MaxConcErr").append(TAB);
+    sb.append("Writers").append(TAB);
+    sb.append("Readers").append(TAB);
+    sb.append("Trials").append(TAB);
+    sb.append("U").append(TAB);
+    sb.append("Write_nS/u").append(TAB);
+    sb.append("Writes/Sec").append(TAB);
+    sb.append("Samples").append(TAB);
+    sb.append("RelLag_p50").append(TAB);
+    sb.append("RelLag_p90").append(TAB);
+    sb.append("RelLag_p99").append(TAB);
+    sb.append("RelLag_max").append(TAB);
+    sb.append("Visibility_uS_p50").append(TAB);
+    sb.append("Visibility_uS_p90").append(TAB);
+    sb.append("Visibility_uS_p99").append(TAB);
+    sb.append("Visibility_uS_max");
+    return sb.toString();
+  }
+
+  /**
+   * Updates its local buffer and counts the update in the true count.
+   */
+  private final class WriterOp implements Runnable {
+    private final UpdateSketch local;
+    private final int offset;
+    private long i;
+
+    WriterOp(final UpdateSketch local, final int offset) {
+      this.local = local;
+      this.offset = offset;
+    }
+
+    void reset(final long base) {
+      local.reset();
+      i = base + offset;
+    }
+
+    @Override
+    public void run() {
+      local.update(i);
+      i += numWriterThreads;
+      trueCount.increment();
+    }
+  }
+
+  /**
+   * Samples the true count and the shared estimate, then waits for the read interval.
+   */
+  private final class ReaderOp implements Runnable {
+    final long[] times_nS = new long[maxSamples];
+    final long[] trues = new long[maxSamples];
+    final double[] estimates = new double[maxSamples];
+    int numSamples;
+
+    void reset() {
+      numSamples = 0;
+    }
+
+    @Override
+    public void run() {
+      if (numSamples < maxSamples) {
+        times_nS[numSamples] = System.nanoTime();
+        trues[numSamples] = trueCount.sum();
+        estimates[numSamples] = sharedSketch.getEstimate();
+        numSamples++;
+      }
+      LockSupport.parkNanos(readInterval_nS);
+    }
+  }
+
+}
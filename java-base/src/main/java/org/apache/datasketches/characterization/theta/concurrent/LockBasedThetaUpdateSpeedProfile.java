@@ -29,6 +29,16 @@ import org.apache.datasketches.characterization.theta.ThetaUpdateSpeedProfile;
 public class LockBasedThetaUpdateSpeedProfile extends ThetaUpdateSpeedProfile {
   private ReentrantReadWriteLock lock_ = new ReentrantReadWriteLock();
 
+  @Override
+  protected void insertHash(final long hash) {
+    try {
+      lock_.writeLock().lock();
+      super.insertHash(hash);
+    } finally {
+      lock_.writeLock().unlock();
+    }
+  }
+
   @Override
   public double doTrial(final int uPerTrial) {
     sketch.reset(); // reuse the same sketch
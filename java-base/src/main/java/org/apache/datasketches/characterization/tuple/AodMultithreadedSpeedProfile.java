@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.tuple;
+
+import org.apache.datasketches.Job;
+import org.apache.datasketches.JobProfile;
+import org.apache.datasketches.Properties;
+import org.apache.datasketches.characterization.DirectMemory;
+import org.apache.datasketches.characterization.concurrent.BarrierTestDriver;
+import org.apache.datasketches.tuple.arrayofdoubles.ArrayOfDoublesCompactSketch;
+import org.apache.datasketches.tuple.arrayofdoubles.ArrayOfDoublesSetOperationBuilder;
+import org.apache.datasketches.tuple.arrayofdoubles.ArrayOfDoublesUnion;
+import org.apache.datasketches.tuple.arrayofdoubles.ArrayOfDoublesUpdatableSketch;
+import org.apache.datasketches.tuple.arrayofdoubles.ArrayOfDoublesUpdatableSketchBuilder;
+
+/**
+ * Multi-threaded ingestion into thread-local ArrayOfDoublesUpdatableSketches, which are then merged
+ * with an ArrayOfDoublesUnion.
+ *
+ * <p>Each trial splits 2^Aod_lgU uniques evenly across the threads. Every thread resets and updates
+ * its own heap sketch, after which the main thread unions the thread sketches and gets the result.
+ * The union is built once per row and reset for each trial. It is either on the heap or, with
+ * Offheap=true, in direct memory.</p>
+ *
+ * <p>A row is output for every combination of the lists Sweep_numValues, Sweep_p (sampling
+ * probability), Sweep_threads (0 = number of available processors) and Sweep_offheap.</p>
+ */
+public class AodMultithreadedSpeedProfile implements JobProfile {
+  private Job job;
+  private Properties prop;
+  private long vIn = 0;
+  private int lgK;
+  private int lgT;
+  private int lgU;
+
+  //JobProfile
+  @Override
+  public void start(final Job job) {
+    this.job = job;
+    prop = job.getProperties();
+    lgK = Integer.parseInt(prop.mustGet("LgK"));
+    lgT = Integer.parseInt(prop.mustGet("Trials_lgT"));
+    lgU = Integer.parseInt(prop.mustGet("Aod_lgU"));
+    doSweep();
+    shutdown();
+    cleanup();
+  }
+
+  @Override
+  public void shutdown() {}
+
+  @Override
+  public void cleanup() {}
+  //end JobProfile
+
+  private void doSweep() {
+    final String[] numValuesArr = prop.mustGet("Sweep_numValues").split(",");
+    final String[] pArr = prop.mustGet("Sweep_p").split(",");
+    final String[] threads = prop.mustGet("Sweep_threads").split(",");
+    final String[] offheapArr = prop.mustGet("Sweep_offheap").split(",");
+    final StringBuilder dataStr = new StringBuilder();
+    job.println(getHeader());
+    for (int v = 0; v < numValuesArr.length; v++) {
+      final int numValues = Integer.parseInt(numValuesArr[v].trim());
+      for (int i = 0; i < pArr.length; i++) {
+        final float p = Float.parseFloat(pArr[i].trim());
+        for (int j = 0; j < threads.length; j++) {
+          int numThreads = Integer.parseInt(threads[j].trim());
+          if (numThreads <= 0) { numThreads = Runtime.getRuntime().availableProcessors(); }
+          for (int o = 0; o < offheapArr.length; o++) {
+            final boolean offheap = Boolean.parseBoolean(offheapArr[o].trim());
+            doTrials(numValues, p, numThreads, offheap, dataStr);
+          }
+        }
+      }
+    }
+  }
+
+  private void doTrials(final int numValues, final float p, final int numThreads,
+      final boolean offheap, final StringBuilder dataStr) {
+    final int k = 1 << lgK;
+    final ArrayOfDoublesUpdatableSketchBuilder sketchBuilder = new ArrayOfDoublesUpdatableSketchBuilder()
+        .setNominalEntries(k).setNumberOfValues(numValues).setSamplingProbability(p);
+    final ArrayOfDoublesUpdatableSketch[] sketches = new ArrayOfDoublesUpdatableSketch[numThreads];
+    final double[][] valuesArr = new double[numThreads][numValues];
+    for (int i = 0; i < numThreads; i++) {
+      sketches[i] = sketchBuilder.build();
+      for (int j = 0; j < numValues; j++) { valuesArr[i][j] = j + 1; }
+    }
+    final ArrayOfDoublesSetOperationBuilder setOpBuilder = new ArrayOfDoublesSetOperationBuilder()
+        .setNominalEntries(k).setNumberOfValues(numValues);
+    final int unionBytes = ArrayOfDoublesUnion.getMaxBytes(k, numValues);
+    final DirectMemory direct = offheap ? new DirectMemory(unionBytes) : null;
+    final ArrayOfDoublesUnion union = offheap
+        ? setOpBuilder.buildUnion(direct.getWritableMemory())
+        : setOpBuilder.buildUnion();
+    final BarrierTestDriver driver = new BarrierTestDriver(numThreads);
+
+    final int trials = 1 << lgT;
+    final int uPerThread = Math.max((1 << lgU) / numThreads, 1);
+    final long totalU = (long) uPerThread * numThreads;
+    System.gc();
+    long sumIngestTime_nS = 0;
+    long sumUnionTime_nS = 0;
+    double sumRelErr = 0;
+    ArrayOfDoublesCompactSketch result = null;
+    for (int t = 0; t < trials; t++) {
+      final long base = vIn;
+      vIn += totalU;
+      sumIngestTime_nS += driver.run(index -> {
+        final ArrayOfDoublesUpdatableSketch sketch = sketches[index];
+        final double[] values = valuesArr[index];
+        sketch.reset();
+        for (long key = base + ((long) index * uPerThread), end = key + uPerThread; key < end; key++) {
+          sketch.update(key, values);
+        }
+      });
+
+      final long startUnionTime_nS = System.nanoTime();
+      union.reset();
+      for (int i = 0; i < numThreads; i++) {
+        union.union(sketches[i]);
+      }
+      result = union.getResult();
+      sumUnionTime_nS += System.nanoTime() - startUnionTime_nS;
+      sumRelErr += (result.getEstimate() / totalU) - 1.0;
+    }
+    driver.shutdown();
+
+    long localBytes = 0;
+    long localEntries = 0;
+    for (int i = 0; i < numThreads; i++) {
+      localBytes += sketches[i].getCurrentBytes();
+      localEntries += sketches[i].getRetainedEntries();
+    }
+    final int resultEntries = result.getRetainedEntries();
+    final double ingestTimePerU_nS = (double) sumIngestTime_nS / trials / totalU;
+
+    //OUTPUT
+    dataStr.setLength(0);
+    dataStr.append(numValues).append(TAB);
+    dataStr.append(p).append(TAB);
+    dataStr.append(numThreads).append(TAB);
+    dataStr.append(offheap ? "Offheap" : "Heap").append(TAB);
+    dataStr.append(trials).append(TAB);
+    dataStr.append(totalU).append(TAB);
+    dataStr.append(ingestTimePerU_nS).append(TAB);
+    dataStr.append(1E9 / ingestTimePerU_nS).append(TAB);
+    dataStr.append((double) sumUnionTime_nS / trials).append(TAB);
+    dataStr.append((double) sumUnionTime_nS / trials / numThreads).append(TAB);
+    dataStr.append(sumRelErr / trials).append(TAB);
+    dataStr.append(resultEntries).append(TAB);
+    dataStr.append(localEntries == 0 ? 0 : (double) localBytes / localEntries).append(TAB);
+    dataStr.append(resultEntries == 0 ? 0 : (double) result.getCurrentBytes() / resultEntries).append(TAB);
+    dataStr.append(offheap ? unionBytes : 0);
+    job.println(dataStr.toString());
+
+    if (direct != null) { direct.close(); }
+  }
+
+  private static String getHeader() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("NumValues").append(TAB);
+    sb.append("P").append(TAB);
+    sb.append("Threads").append(TAB);
+    sb.append("Union").append(TAB);
+    sb.append("Trials").append(TAB);
+    sb.append("U").append(TAB);
+    sb.append("Ingest_nS/u").append(TAB);
+    sb.append("Updates/Sec").append(TAB);
+    sb.append("Union_nS").append(TAB);
+    sb.append("Union_nS/Sketch").append(TAB);
+    sb.append("MeanRelErr").append(TAB);
+    sb.append("ResultEntries").append(TAB);
+    sb.append("LocalBytes/Entry").append(TAB);
+    sb.append("ResultBytes/Entry").append(TAB);
+    sb.append("OffheapUnionBytes");
+    return sb.toString();
+  }
+
+}
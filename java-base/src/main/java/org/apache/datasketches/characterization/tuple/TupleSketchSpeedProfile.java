@@ -0,0 +1,304 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.tuple;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import org.apache.datasketches.Job;
+import org.apache.datasketches.JobProfile;
+import org.apache.datasketches.Properties;
+import org.apache.datasketches.tuple.CompactSketch;
+import org.apache.datasketches.tuple.Intersection;
+import org.apache.datasketches.tuple.Sketch;
+import org.apache.datasketches.tuple.Summary;
+import org.apache.datasketches.tuple.SummarySetOperations;
+import org.apache.datasketches.tuple.Union;
+import org.apache.datasketches.tuple.aninteger.IntegerSketch;
+import org.apache.datasketches.tuple.aninteger.IntegerSummary;
+import org.apache.datasketches.tuple.aninteger.IntegerSummarySetOperations;
+import org.apache.datasketches.tuple.strings.ArrayOfStringsSketch;
+import org.apache.datasketches.tuple.strings.ArrayOfStringsSummary;
+import org.apache.datasketches.tuple.strings.ArrayOfStringsSummarySetOperations;
+
+/**
+ * Speed and allocation of the generic tuple sketches, whose entries each hold a Summary object.
+ *
+ * <p>The summaries, selected by the list Sweep_summary, are INTEGER_SUM, INTEGER_MIN and
+ * INTEGER_MAX (IntegerSketch in the given mode) and STRINGS (ArrayOfStringsSketch with
+ * Tuple_numStringValues values per key). The keys are generated before the timed regions.</p>
+ *
+ * <p>For each U from 2^Sweep_lgMinU to 2^Sweep_lgMaxU a sketch is reset and updated with U keys
+ * 2^Trials_lgT times. The update time, the bytes allocated by the updating thread and the garbage
+ * collections during these trials are reported. Then two sketches of U keys, overlapping by half,
+ * are unioned and intersected 2^Trials_lgT times each.</p>
+ *
+ * <p>The allocated bytes are read from the HotSpot com.sun.management.ThreadMXBean.</p>
+ */
+public class TupleSketchSpeedProfile implements JobProfile {
+  private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  private Job job;
+  private Properties prop;
+  private int lgK;
+  private int lgT;
+  private int numStringValues;
+  private String[][] stringKeys;
+
+  //JobProfile
+  @Override
+  public void start(final Job job) {
+    this.job = job;
+    prop = job.getProperties();
+    lgK = Integer.parseInt(prop.mustGet("LgK"));
+    lgT = Integer.parseInt(prop.mustGet("Trials_lgT"));
+    numStringValues = Integer.parseInt(prop.mustGet("Tuple_numStringValues"));
+    doSweep();
+    shutdown();
+    cleanup();
+  }
+
+  @Override
+  public void shutdown() {}
+
+  @Override
+  public void cleanup() {}
+  //end JobProfile
+
+  private void doSweep() {
+    final int lgMinU = Integer.parseInt(prop.mustGet("Sweep_lgMinU"));
+    final int lgMaxU = Integer.parseInt(prop.mustGet("Sweep_lgMaxU"));
+    final String[] summaries = prop.mustGet("Sweep_summary").split(",");
+    final StringBuilder dataStr = new StringBuilder();
+    job.println(getHeader());
+    for (int lgU = lgMinU; lgU <= lgMaxU; lgU++) {
+      for (int s = 0; s < summaries.length; s++) {
+        doTrials(newCase(summaries[s].trim().toUpperCase(), 1 << lgMaxU), 1 << lgU, dataStr);
+      }
+    }
+  }
+
+  private TupleCase<?> newCase(final String name, final int maxU) {
+    if (name.equals("STRINGS")) {
+      if (stringKeys == null) {
+        stringKeys = new String[maxU + (maxU / 2)][];
+        for (int i = 0; i < stringKeys.length; i++) { stringKeys[i] = new String[] {Integer.toString(i)}; }
+      }
+      return new StringsCase();
+    }
+    if (name.startsWith("INTEGER_")) {
+      for (final IntegerSummary.Mode mode : IntegerSummary.Mode.values()) {
+        if (name.equals("INTEGER_" + mode.name().toUpperCase())) { return new IntegerCase(name, mode); }
+      }
+    }
+    throw new IllegalArgumentException("Unknown summary: " + name);
+  }
+
+  private <S extends Summary> void doTrials(final TupleCase<S> tc, final int u,
+      final StringBuilder dataStr) {
+    final int trials = 1 << lgT;
+
+    //updates
+    tc.fill(0, 0, u); //warm up
+    System.gc();
+    final long startGcCount = getGcCount();
+    final long startGcTime_mS = getGcTime_mS();
+    final long startAlloc = getAllocatedBytes();
+    final long startUpdateTime_nS = System.nanoTime();
+    for (int t = 0; t < trials; t++) {
+      tc.fill(0, 0, u);
+    }
+    final long updateTime_nS = System.nanoTime() - startUpdateTime_nS;
+    final long updateAlloc = getAllocatedBytes() - startAlloc;
+    final long gcCount = getGcCount() - startGcCount;
+    final long gcTime_mS = getGcTime_mS() - startGcTime_mS;
+    final Sketch<S> a = tc.getSketch(0);
+    final int entries = a.getRetainedEntries();
+    final int serBytes = a.compact().toByteArray().length;
+
+    //set operations on two sketches overlapping by half
+    tc.fill(1, u / 2, u + (u / 2));
+    final Sketch<S> b = tc.getSketch(1);
+    final Union<S> union = new Union<>(1 << lgK, tc.getSetOperations());
+    final Intersection<S> inter = new Intersection<>(tc.getSetOperations());
+    long startAllocOp = getAllocatedBytes();
+    final long startUnionTime_nS = System.nanoTime();
+    for (int t = 0; t < trials; t++) {
+      union.reset();
+      union.union(a);
+      union.union(b);
+      union.getResult();
+    }
+    final long unionTime_nS = System.nanoTime() - startUnionTime_nS;
+    final long unionAlloc = getAllocatedBytes() - startAllocOp;
+    startAllocOp = getAllocatedBytes();
+    CompactSketch<S> interResult = null;
+    final long startInterTime_nS = System.nanoTime();
+    for (int t = 0; t < trials; t++) {
+      inter.reset();
+      inter.intersect(a);
+      inter.intersect(b);
+      interResult = inter.getResult();
+    }
+    final long interTime_nS = System.nanoTime() - startInterTime_nS;
+    final long interAlloc = getAllocatedBytes() - startAllocOp;
+
+    final double totalU = (double) u * trials;
+
+    //OUTPUT
+    dataStr.setLength(0);
+    dataStr.append(tc.getName()).append(TAB);
+    dataStr.append(u).append(TAB);
+    dataStr.append(trials).append(TAB);
+    dataStr.append(updateTime_nS / totalU).append(TAB);
+    dataStr.append(updateAlloc / totalU).append(TAB);
+    dataStr.append(entries == 0 ? 0 : (double) updateAlloc / trials / entries).append(TAB);
+    dataStr.append(gcCount).append(TAB);
+    dataStr.append(gcTime_mS).append(TAB);
+    dataStr.append(entries).append(TAB);
+    dataStr.append(entries == 0 ? 0 : (double) serBytes / entries).append(TAB);
+    dataStr.append((double) unionTime_nS / trials).append(TAB);
+    dataStr.append((double) unionAlloc / trials).append(TAB);
+    dataStr.append((double) interTime_nS / trials).append(TAB);
+    dataStr.append((double) interAlloc / trials).append(TAB);
+    dataStr.append(interResult.getRetainedEntries());
+    job.println(dataStr.toString());
+  }
+
+  @SuppressWarnings("deprecation") //getId() is deprecated since Java 19, threadId() is not in Java 8
+  private static long getAllocatedBytes() {
+    return THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private static long getGcCount() {
+    long count = 0;
+    for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gc.getCollectionCount());
+    }
+    return count;
+  }
+
+  private static long getGcTime_mS() {
+    long time_mS = 0;
+    for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      time_mS += Math.max(0, gc.getCollectionTime());
+    }
+    return time_mS;
+  }
+
+  private static String getHeader() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("Summary").append(TAB);
+    sb.append("U").append(TAB);
+    sb.append("Trials").append(TAB);
+    sb.append("Update_nS/u").append(TAB);
+    sb.append("Alloc_B/u").append(TAB);
+    sb.append("Alloc_B/Entry").append(TAB);
+    sb.append("GCs").append(TAB);
+    sb.append("GC_mS").append(TAB);
+    sb.append("Entries").append(TAB);
+    sb.append("SerBytes/Entry").append(TAB);
+    sb.append("Union_nS").append(TAB);
+    sb.append("Union_Alloc_B").append(TAB);
+    sb.append("Inter_nS").append(TAB);
+    sb.append("Inter_Alloc_B").append(TAB);
+    sb.append("InterEntries");
+    return sb.toString();
+  }
+
+  /**
+   * Two sketches of one summary type.
+   * @param <S> the type of Summary
+   */
+  private abstract static class TupleCase<S extends Summary> {
+
+    abstract String getName();
+
+    /**
+     * Resets the given sketch and updates it with the keys lo to hi - 1.
+     * @param s the index of the sketch, 0 or 1
+     * @param lo the first key
+     * @param hi the key after the last key
+     */
+    abstract void fill(int s, int lo, int hi);
+
+    abstract Sketch<S> getSketch(int s);
+
+    abstract SummarySetOperations<S> getSetOperations();
+  }
+
+  private final class IntegerCase extends TupleCase<IntegerSummary> {
+    private final String name;
+    private final IntegerSketch[] sketches;
+    private final IntegerSummarySetOperations setOps;
+    private final Integer value = 1;
+
+    IntegerCase(final String name, final IntegerSummary.Mode mode) {
+      this.name = name;
+      sketches = new IntegerSketch[] {new IntegerSketch(lgK, mode), new IntegerSketch(lgK, mode)};
+      setOps = new IntegerSummarySetOperations(mode, mode);
+    }
+
+    @Override
+    String getName() { return name; }
+
+    @Override
+    void fill(final int s, final int lo, final int hi) {
+      final IntegerSketch sketch = sketches[s];
+      sketch.reset();
+      for (int i = lo; i < hi; i++) { sketch.update((long) i, value); }
+    }
+
+    @Override
+    Sketch<IntegerSummary> getSketch(final int s) { return sketches[s]; }
+
+    @Override
+    SummarySetOperations<IntegerSummary> getSetOperations() { return setOps; }
+  }
+
+  private final class StringsCase extends TupleCase<ArrayOfStringsSummary> {
+    private final ArrayOfStringsSketch[] sketches;
+    private final ArrayOfStringsSummarySetOperations setOps = new ArrayOfStringsSummarySetOperations();
+    private final String[] values;
+
+    StringsCase() {
+      sketches = new ArrayOfStringsSketch[] {new ArrayOfStringsSketch(lgK), new ArrayOfStringsSketch(lgK)};
+      values = new String[numStringValues];
+      for (int i = 0; i < numStringValues; i++) { values[i] = "value" + i; }
+    }
+
+    @Override
+    String getName() { return "STRINGS"; }
+
+    @Override
+    void fill(final int s, final int lo, final int hi) {
+      final ArrayOfStringsSketch sketch = sketches[s];
+      sketch.reset();
+      for (int i = lo; i < hi; i++) { sketch.update(stringKeys[i], values); }
+    }
+
+    @Override
+    Sketch<ArrayOfStringsSummary> getSketch(final int s) { return sketches[s]; }
+
+    @Override
+    SummarySetOperations<ArrayOfStringsSummary> getSetOperations() { return setOps; }
+  }
+
+}
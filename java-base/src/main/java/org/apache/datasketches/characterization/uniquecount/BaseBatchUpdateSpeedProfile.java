@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.uniquecount;
+
+import static java.lang.Math.min;
+
+/**
+ * Compares per-item updates against batched updates of the same keys.
+ *
+ * <p>None of the unique count sketches have a native batch update API, so the batched path is a
+ * characterization-side adapter: each block of keys is first hashed into a buffer and then the
+ * block of hashes is inserted through the lowest-level update entry point of the sketch.
+ * The block sizes are swept from 2^Batch_lgMinSize to 2^Batch_lgMaxSize, which should bracket the
+ * L1 and L2 cache sizes of the machine.</p>
+ *
+ * <p>Each trial updates a reset sketch with the same uPerTrial keys once per item and then once for
+ * each block size. The per-item time is reported in the nS/Set column followed by one column per
+ * block size.</p>
+ */
+public abstract class BaseBatchUpdateSpeedProfile extends BaseUpdateSpeedProfile {
+  private int[] batchSizes;
+  private double[] sumBatchTimePerU_nS;
+
+  @Override
+  public void configure() {
+    final int lgMinSize = Integer.parseInt(prop.mustGet("Batch_lgMinSize"));
+    final int lgMaxSize = Integer.parseInt(prop.mustGet("Batch_lgMaxSize"));
+    final int numSizes = lgMaxSize - lgMinSize + 1;
+    batchSizes = new int[numSizes];
+    for (int i = 0; i < numSizes; i++) { batchSizes[i] = 1 << (lgMinSize + i); }
+    sumBatchTimePerU_nS = new double[numSizes];
+    configureSketch(batchSizes[numSizes - 1]);
+  }
+
+  /**
+   * Configure the sketch and the hash buffer
+   * @param maxBatchSize the largest block size that will be passed to hashBatch and insertBatch
+   */
+  public abstract void configureSketch(final int maxBatchSize);
+
+  /**
+   * Reset the sketch to empty
+   */
+  public abstract void resetSketch();
+
+  /**
+   * Update the sketch one item at a time through the public update(long) method.
+   * @param firstKey the first key
+   * @param count the number of consecutive keys starting at firstKey
+   */
+  public abstract void updateItems(final long firstKey, final int count);
+
+  /**
+   * Hash a block of consecutive keys into the hash buffer.
+   * @param firstKey the first key
+   * @param len the number of consecutive keys starting at firstKey
+   */
+  public abstract void hashBatch(final long firstKey, final int len);
+
+  /**
+   * Insert the first len hashes of the hash buffer into the sketch.
+   * @param len the number of hashes to insert
+   */
+  public abstract void insertBatch(final int len);
+
+  @Override
+  public double doTrial(final int uPerTrial) {
+    final long firstKey = vIn + 1;
+    vIn += uPerTrial;
+
+    resetSketch();
+    final long startUpdateTime_nS = System.nanoTime();
+    updateItems(firstKey, uPerTrial);
+    final long updateTime_nS = System.nanoTime() - startUpdateTime_nS;
+
+    for (int i = 0; i < batchSizes.length; i++) {
+      final int batchSize = batchSizes[i];
+      resetSketch();
+      final long startBatchTime_nS = System.nanoTime();
+      for (int done = 0; done < uPerTrial; done += batchSize) {
+        final int len = min(batchSize, uPerTrial - done);
+        hashBatch(firstKey + done, len);
+        insertBatch(len);
+      }
+      final long batchTime_nS = System.nanoTime() - startBatchTime_nS;
+      sumBatchTimePerU_nS[i] += (double) batchTime_nS / uPerTrial;
+    }
+    return (double) updateTime_nS / uPerTrial;
+  }
+
+  @Override
+  public void appendHeaderColumns(final StringBuilder sb) {
+    for (int i = 0; i < batchSizes.length; i++) {
+      sb.append(TAB).append("nS/Batch").append(batchSizes[i]);
+    }
+  }
+
+  @Override
+  public void appendDataColumns(final StringBuilder sb, final int trials) {
+    for (int i = 0; i < batchSizes.length; i++) {
+      sb.append(TAB).append(sumBatchTimePerU_nS[i] / trials);
+      sumBatchTimePerU_nS[i] = 0;
+    }
+  }
+
+}
@@ -0,0 +1,295 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.uniquecount;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.apache.datasketches.Job;
+import org.apache.datasketches.JobProfile;
+import org.apache.datasketches.Properties;
+import org.apache.datasketches.characterization.MappedFile;
+import org.apache.datasketches.characterization.concurrent.BarrierTestDriver;
+import org.apache.datasketches.memory.Memory;
+
+/**
+ * Merges a corpus of serialized sketches read from a memory-mapped file.
+ *
+ * <p>The corpus file holds Corpus_numSketches serialized sketches back to back, followed by an
+ * index of numSketches + 1 offsets and finally the long numSketches, all in native byte order.
+ * The file is mapped with Memory.map and every sketch is merged from its region of the mapped
+ * Memory, either zero-copy through wrap or by heapify.</p>
+ *
+ * <p>For each of the two modes the thread count is doubled from Corpus_minThreads to
+ * Corpus_maxThreads (0 = all available processors). Each thread merges a contiguous partition of
+ * the corpus into its own union and the per-thread unions are combined at the end.
+ * Each thread count starts with a first pass on a freshly mapped file followed by Trials_lgT warm
+ * passes. If Corpus_dropCacheCmd is given it is run by the shell before the first pass, e.g.,
+ * "sync; echo 1 > /proc/sys/vm/drop_caches", and if it exits with 0 the first pass is labeled
+ * Cold, since it also reads from the device. Otherwise the corpus, which was just written, is
+ * still in the page cache, so the first pass is labeled FirstMap: it only pays for the page
+ * faults of the fresh mapping.</p>
+ *
+ * @param <U> the union type
+ */
+public abstract class BaseCorpusMergeProfile<U> implements JobProfile {
+  private static final int LONG_BYTES = 8;
+  private Job job;
+  public Properties prop;
+  public long vIn = 0;
+  private int lgT;
+  private int numSketches;
+  private int uPerSketch;
+  private int minThreads;
+  private int maxThreads;
+  private String dropCacheCmd;
+  private File corpusFile;
+  private long corpusBytes;
+  private double trueU;
+  private double relErr; //of the last pass
+
+  //JobProfile
+  @Override
+  public void start(final Job job) {
+    this.job = job;
+    prop = job.getProperties();
+    lgT = Integer.parseInt(prop.mustGet("Trials_lgT"));
+    numSketches = Integer.parseInt(prop.mustGet("Corpus_numSketches"));
+    uPerSketch = Integer.parseInt(prop.mustGet("Corpus_uPerSketch"));
+    minThreads = Integer.parseInt(prop.mustGet("Corpus_minThreads"));
+    maxThreads = Integer.parseInt(prop.mustGet("Corpus_maxThreads"));
+    if (maxThreads <= 0) { maxThreads = Runtime.getRuntime().availableProcessors(); }
+    final String cmd = prop.get("Corpus_dropCacheCmd");
+    dropCacheCmd = (cmd == null || cmd.trim().isEmpty()) ? null : cmd.trim();
+    configure();
+    writeCorpus();
+    doTrials();
+    shutdown();
+    cleanup();
+  }
+
+  @Override
+  public void shutdown() {}
+
+  @Override
+  public void cleanup() {
+    if (corpusFile != null && !corpusFile.delete()) { corpusFile.deleteOnExit(); }
+  }
+  //end JobProfile
+
+  /**
+   * Configure the sketches and unions
+   */
+  public abstract void configure();
+
+  /**
+   * Create a new sketch, update it with the given number of uniques starting after vIn
+   * and return its compact serialized form.
+   * @param uPerSketch the number of uniques
+   * @return the compact serialized form of the sketch
+   */
+  public abstract byte[] newSerializedSketch(int uPerSketch);
+
+  /**
+   * Create a new empty union
+   * @return a new empty union
+   */
+  public abstract U newUnion();
+
+  /**
+   * Merge the serialized sketch in the given Memory into the union without copying it to the heap.
+   * @param union the union
+   * @param mem the region of the mapped file holding one serialized sketch
+   */
+  public abstract void mergeWrapped(U union, Memory mem);
+
+  /**
+   * Heapify the serialized sketch in the given Memory and merge it into the union.
+   * @param union the union
+   * @param mem the region of the mapped file holding one serialized sketch
+   */
+  public abstract void mergeHeapified(U union, Memory mem);
+
+  /**
+   * Merge the result of the source union into the target union.
+   * @param target the target union
+   * @param source the source union
+   */
+  public abstract void combine(U target, U source);
+
+  /**
+   * Get the estimate of the given union
+   * @param union the union
+   * @return the estimate of the given union
+   */
+  public abstract double getEstimate(U union);
+
+  private void writeCorpus() {
+    final String dir = prop.get("Corpus_dir");
+    try {
+      corpusFile = File.createTempFile("corpus", ".bin",
+          (dir == null || dir.trim().isEmpty()) ? null : new File(dir.trim()));
+      corpusFile.deleteOnExit();
+      final ByteBuffer index = ByteBuffer.allocate((numSketches + 2) * LONG_BYTES)
+          .order(ByteOrder.nativeOrder());
+      long offset = 0;
+      try (OutputStream out = new BufferedOutputStream(new FileOutputStream(corpusFile), 1 << 16)) {
+        for (int i = 0; i < numSketches; i++) {
+          final byte[] bytes = newSerializedSketch(uPerSketch);
+          out.write(bytes);
+          index.putLong(offset);
+          offset += bytes.length;
+        }
+        index.putLong(offset);
+        index.putLong(numSketches);
+        out.write(index.array());
+      }
+      corpusBytes = offset;
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    trueU = (double) numSketches * uPerSketch;
+    job.println("Corpus: " + corpusFile + ", Sketches: " + numSketches + ", Sketch Bytes: " + corpusBytes);
+  }
+
+  private void doTrials() {
+    final int trials = 1 << lgT;
+    final StringBuilder dataStr = new StringBuilder();
+    job.println(getHeader());
+    for (int m = 0; m < 2; m++) {
+      final boolean wrap = (m == 0);
+      for (int numThreads = minThreads; numThreads <= maxThreads; numThreads = nextThreads(numThreads)) {
+        final BarrierTestDriver driver = new BarrierTestDriver(numThreads);
+        @SuppressWarnings("unchecked")
+        final U[] unions = (U[]) new Object[numThreads];
+        final String firstPass = dropCache() ? "Cold" : "FirstMap";
+        try (MappedFile mapped = new MappedFile(corpusFile)) {
+          final Memory mem = mapped.getMemory();
+          final long indexStart = mem.getCapacity() - ((numSketches + 2L) * LONG_BYTES);
+          final long firstTime_nS = doPass(mem, indexStart, wrap, driver, unions);
+          process(wrap, numThreads, firstPass, 1, firstTime_nS, dataStr);
+          job.println(dataStr.toString());
+          long sumWarmTime_nS = 0;
+          for (int t = 0; t < trials; t++) {
+            sumWarmTime_nS += doPass(mem, indexStart, wrap, driver, unions);
+          }
+          process(wrap, numThreads, "Warm", trials, (double) sumWarmTime_nS / trials, dataStr);
+          job.println(dataStr.toString());
+        } catch (final IOException e) {
+          throw new RuntimeException(e);
+        } finally {
+          driver.shutdown();
+        }
+      }
+    }
+  }
+
+  /**
+   * Merges the whole corpus once and returns the elapsed time in nanoseconds.
+   */
+  private long doPass(final Memory mem, final long indexStart, final boolean wrap,
+      final BarrierTestDriver driver, final U[] unions) {
+    final int numThreads = driver.getNumThreads();
+    final long driverTime_nS = driver.run(index -> {
+      final int lo = (int) (((long) numSketches * index) / numThreads);
+      final int hi = (int) (((long) numSketches * (index + 1)) / numThreads);
+      final U union = newUnion();
+      long start = mem.getLong(indexStart + ((long) lo * LONG_BYTES));
+      for (int i = lo; i < hi; i++) {
+        final long end = mem.getLong(indexStart + ((long) (i + 1) * LONG_BYTES));
+        final Memory region = mem.region(start, end - start);
+        if (wrap) { mergeWrapped(union, region); }
+        else { mergeHeapified(union, region); }
+        start = end;
+      }
+      unions[index] = union;
+    });
+    final long startTime_nS = System.nanoTime();
+    final U result = newUnion();
+    for (int i = 0; i < numThreads; i++) {
+      combine(result, unions[i]);
+      unions[i] = null;
+    }
+    final long combineTime_nS = System.nanoTime() - startTime_nS;
+    relErr = (getEstimate(result) / trueU) - 1.0;
+    return driverTime_nS + combineTime_nS;
+  }
+
+  private void process(final boolean wrap, final int numThreads, final String pass,
+      final int trials, final double time_nS, final StringBuilder dataStr) {
+    //OUTPUT
+    dataStr.setLength(0);
+    dataStr.append(wrap ? "Wrap" : "Heapify").append(TAB);
+    dataStr.append(numThreads).append(TAB);
+    dataStr.append(pass).append(TAB);
+    dataStr.append(trials).append(TAB);
+    dataStr.append(numSketches).append(TAB);
+    dataStr.append(time_nS / 1E6).append(TAB);
+    dataStr.append(numSketches * 1E9 / time_nS).append(TAB);
+    dataStr.append(corpusBytes / time_nS).append(TAB); //bytes per nS = GB/s
+    dataStr.append(relErr);
+  }
+
+  /**
+   * Runs Corpus_dropCacheCmd, if given. A failure is reported on stderr, outside the data rows.
+   * @return true if the command ran and exited with 0
+   */
+  private boolean dropCache() {
+    if (dropCacheCmd == null) { return false; }
+    try {
+      final Process p = new ProcessBuilder("sh", "-c", dropCacheCmd).inheritIO().start();
+      final int exit = p.waitFor();
+      if (exit != 0) { System.err.println("WARNING: Corpus_dropCacheCmd exited with " + exit); }
+      return exit == 0;
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /**
+   * Doubles the thread count but always ends with maxThreads.
+   */
+  private int nextThreads(final int numThreads) {
+    return (numThreads < maxThreads) ? Math.min(2 * numThreads, maxThreads) : maxThreads + 1;
+  }
+
+  private static String getHeader() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("Mode").append(TAB);
+    sb.append("Threads").append(TAB);
+    sb.append("Pass").append(TAB);
+    sb.append("Trials").append(TAB);
+    sb.append("Sketches").append(TAB);
+    sb.append("Time_mS").append(TAB);
+    sb.append("Sketches/Sec").append(TAB);
+    sb.append("GB/Sec").append(TAB);
+    sb.append("RelErr");
+    return sb.toString();
+  }
+
+}
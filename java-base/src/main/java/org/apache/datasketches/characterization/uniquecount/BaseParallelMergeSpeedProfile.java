@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.uniquecount;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.datasketches.Job;
+import org.apache.datasketches.JobProfile;
+import org.apache.datasketches.Properties;
+import org.apache.datasketches.characterization.concurrent.BarrierTestDriver;
+
+/**
+ * Reduces an array of pre-built sketches into a single sketch, sequentially and in parallel.
+ *
+ * <p>Two parallel modes are supported by the property Merge_mode:</p>
+ * <ul>
+ * <li>TREE: a binary tree of unions over a ForkJoinPool. Ranges of at most Merge_leafSize sketches
+ * are reduced sequentially and the partial results are merged pairwise up the tree.</li>
+ * <li>PER_THREAD: each thread reduces a contiguous partition of the array into its own union and
+ * the per-thread results are combined at the end by the calling thread.</li>
+ * </ul>
+ *
+ * <p>The fan-in is swept from 2^Merge_lgMinSketches to 2^Merge_lgMaxSketches and, for each
+ * fan-in, the thread count is doubled from Merge_minThreads to Merge_maxThreads (0 = all available
+ * processors). Each row reports the sequential and parallel merge times, the merged sketches per
+ * second, and the speedup and scaling efficiency relative to the sequential reduction.</p>
+ *
+ * @param <S> the sketch type
+ * @param <U> the union type
+ */
+public abstract class BaseParallelMergeSpeedProfile<S, U> implements JobProfile {
+  private Job job;
+  public Properties prop;
+  public long vIn = 0;
+  private int lgT;
+  private int lgMinSketches;
+  private int lgMaxSketches;
+  private int uPerSketch;
+  private int minThreads;
+  private int maxThreads;
+  private int leafSize;
+  private boolean treeMode;
+
+  //JobProfile
+  @Override
+  public void start(final Job job) {
+    this.job = job;
+    prop = job.getProperties();
+    lgT = Integer.parseInt(prop.mustGet("Trials_lgT"));
+    lgMinSketches = Integer.parseInt(prop.mustGet("Merge_lgMinSketches"));
+    lgMaxSketches = Integer.parseInt(prop.mustGet("Merge_lgMaxSketches"));
+    uPerSketch = Integer.parseInt(prop.mustGet("Merge_uPerSketch"));
+    minThreads = Integer.parseInt(prop.mustGet("Merge_minThreads"));
+    maxThreads = Integer.parseInt(prop.mustGet("Merge_maxThreads"));
+    if (maxThreads <= 0) { maxThreads = Runtime.getRuntime().availableProcessors(); }
+    leafSize = Integer.parseInt(prop.mustGet("Merge_leafSize"));
+    final String mode = prop.mustGet("Merge_mode");
+    if (mode.equalsIgnoreCase("TREE")) { treeMode = true; }
+    else if (mode.equalsIgnoreCase("PER_THREAD")) { treeMode = false; }
+    else { throw new IllegalArgumentException("Merge_mode must be TREE or PER_THREAD: " + mode); }
+    configure();
+    doTrials();
+    shutdown();
+    cleanup();
+  }
+
+  @Override
+  public void shutdown() {}
+
+  @Override
+  public void cleanup() {}
+  //end JobProfile
+
+  /**
+   * Configure the sketches and unions
+   */
+  public abstract void configure();
+
+  /**
+   * Create a new sketch and update it with the given number of uniques starting after vIn.
+   * @param uPerSketch the number of uniques
+   * @return a new sketch in the form it would be merged in production
+   */
+  public abstract S newSourceSketch(int uPerSketch);
+
+  /**
+   * Create a new empty union
+   * @return a new empty union
+   */
+  public abstract U newUnion();
+
+  /**
+   * Merge the given sketch into the given union
+   * @param union the union
+   * @param sketch the sketch
+   */
+  public abstract void merge(U union, S sketch);
+
+  /**
+   * Get the result of the given union as a sketch that can itself be merged
+   * @param union the union
+   * @return the result of the given union
+   */
+  public abstract S getResult(U union);
+
+  /**
+   * Get the estimate of the given sketch
+   * @param sketch the sketch
+   * @return the estimate of the given sketch
+   */
+  public abstract double getEstimate(S sketch);
+
+  private void doTrials() {
+    final int trials = 1 << lgT;
+    final StringBuilder dataStr = new StringBuilder();
+    job.println(getHeader());
+    for (int lgM = lgMinSketches; lgM <= lgMaxSketches; lgM++) {
+      final int numSketches = 1 << lgM;
+      @SuppressWarnings("unchecked")
+      final S[] sources = (S[]) new Object[numSketches];
+      for (int i = 0; i < numSketches; i++) { sources[i] = newSourceSketch(uPerSketch); }
+      final double trueU = (double) numSketches * uPerSketch;
+
+      System.gc();
+      long sumSeqTime_nS = 0;
+      for (int t = 0; t < trials; t++) {
+        final long startTime_nS = System.nanoTime();
+        reduce(sources, 0, numSketches);
+        sumSeqTime_nS += System.nanoTime() - startTime_nS;
+      }
+      final double seqTime_nS = (double) sumSeqTime_nS / trials;
+
+      for (int numThreads = minThreads; numThreads <= maxThreads; numThreads = nextThreads(numThreads)) {
+        System.gc();
+        long sumParTime_nS = 0;
+        double sumRelErr = 0;
+        if (treeMode) {
+          final ForkJoinPool pool = new ForkJoinPool(numThreads);
+          for (int t = 0; t < trials; t++) {
+            final long startTime_nS = System.nanoTime();
+            final S result = pool.invoke(new ReduceTask(sources, 0, numSketches));
+            sumParTime_nS += System.nanoTime() - startTime_nS;
+            sumRelErr += (getEstimate(result) / trueU) - 1.0;
+          }
+          pool.shutdown();
+        } else {
+          final BarrierTestDriver driver = new BarrierTestDriver(numThreads);
+          @SuppressWarnings("unchecked")
+          final S[] partials = (S[]) new Object[numThreads];
+          final int nThreads = numThreads;
+          for (int t = 0; t < trials; t++) {
+            final long driverTime_nS = driver.run(index -> {
+              final int lo = (int) (((long) numSketches * index) / nThreads);
+              final int hi = (int) (((long) numSketches * (index + 1)) / nThreads);
+              partials[index] = reduce(sources, lo, hi);
+            });
+            final long startTime_nS = System.nanoTime();
+            final S result = reduce(partials, 0, nThreads);
+            sumParTime_nS += driverTime_nS + (System.nanoTime() - startTime_nS);
+            sumRelErr += (getEstimate(result) / trueU) - 1.0;
+          }
+          driver.shutdown();
+        }
+        final double parTime_nS = (double) sumParTime_nS / trials;
+        final double speedup = seqTime_nS / parTime_nS;
+
+        //OUTPUT
+        dataStr.setLength(0);
+        dataStr.append(numSketches).append(TAB);
+        dataStr.append(numThreads).append(TAB);
+        dataStr.append(trials).append(TAB);
+        dataStr.append(seqTime_nS).append(TAB);
+        dataStr.append(parTime_nS).append(TAB);
+        dataStr.append(parTime_nS / numSketches).append(TAB);
+        dataStr.append(numSketches * 1E9 / parTime_nS).append(TAB);
+        dataStr.append(speedup).append(TAB);
+        dataStr.append(speedup / numThreads).append(TAB);
+        dataStr.append(sumRelErr / trials);
+        job.println(dataStr.toString());
+      }
+    }
+  }
+
+  /**
+   * Doubles the thread count but always ends with maxThreads.
+   */
+  private int nextThreads(final int numThreads) {
+    return (numThreads < maxThreads) ? Math.min(2 * numThreads, maxThreads) : maxThreads + 1;
+  }
+
+  /**
+   * Sequentially reduces the sketches in the given range with a single union.
+   */
+  private S reduce(final S[] sketches, final int lo, final int hi) {
+    final U union = newUnion();
+    for (int i = lo; i < hi; i++) {
+      merge(union, sketches[i]);
+    }
+    return getResult(union);
+  }
+
+  private String getHeader() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("Sketches").append(TAB);
+    sb.append("Threads").append(TAB);
+    sb.append("Trials").append(TAB);
+    sb.append("Seq_nS").append(TAB);
+    sb.append(treeMode ? "Tree_nS" : "PerThread_nS").append(TAB);
+    sb.append("nS/Sketch").append(TAB);
+    sb.append("Sketches/Sec").append(TAB);
+    sb.append("Speedup").append(TAB);
+    sb.append("Efficiency").append(TAB);
+    sb.append("MeanRelErr");
+    return sb.toString();
+  }
+
+  private class ReduceTask extends RecursiveTask<S> {
+    private static final long serialVersionUID = 1L;
+    private final S[] sketches;
+    private final int lo;
+    private final int hi;
+
+    ReduceTask(final S[] sketches, final int lo, final int hi) {
+      this.sketches = sketches;
+      this.lo = lo;
+      this.hi = hi;
+    }
+
+    @Override
+    protected S compute() {
+      if (hi - lo <= leafSize) {
+        return reduce(sketches, lo, hi);
+      }
+      final int mid = (lo + hi) >>> 1;
+      final ReduceTask left = new ReduceTask(sketches, lo, mid);
+      left.fork();
+      final S rightResult = new ReduceTask(sketches, mid, hi).compute();
+      final S leftResult = left.join();
+      final U union = newUnion();
+      merge(union, leftResult);
+      merge(union, rightResult);
+      return getResult(union);
+    }
+  }
+
+}
@@ -43,6 +43,7 @@ public abstract class BaseUpdateSpeedProfile implements JobProfile {
   int lgMaxBpU;
   int numSketches = 1;
   double slope;
+  boolean preHashed = false;
 
   //JobProfile
   @Override
@@ -58,6 +59,11 @@ public abstract class BaseUpdateSpeedProfile implements JobProfile {
     lgMaxBpU = Integer.parseInt(prop.mustGet("Trials_lgMaxBpU"));
     final String nSk = prop.get("NumSketches");
     numSketches = (nSk != null) ? Integer.parseInt(nSk) : 1;
+    final String preHashedStr = prop.get("PreHashed");
+    preHashed = (preHashedStr != null) && Boolean.parseBoolean(preHashedStr);
+    if (preHashed && !(this instanceof PreHashedTrials)) {
+      throw new IllegalArgumentException(getClass().getSimpleName() + " does not support PreHashed mode.");
+    }
     slope = (double) (lgMaxT - lgMinT) / (lgMinBpU - lgMaxBpU);
     configure();
     doTrials();
@@ -84,6 +90,21 @@ public abstract class BaseUpdateSpeedProfile implements JobProfile {
    */
   public abstract double doTrial(final int uPerTrial);
 
+  /**
+   * Appends the names of any additional columns to the header row.
+   * Subclasses that time more than one path per trial override this together with
+   * {@link #appendDataColumns(StringBuilder, int)}.
+   * @param sb the StringBuilder of the header row
+   */
+  public void appendHeaderColumns(final StringBuilder sb) {}
+
+  /**
+   * Appends the values of any additional columns to the data row of the current U point.
+   * @param sb the StringBuilder of the data row
+   * @param trials the number of trials performed at the current U point
+   */
+  public void appendDataColumns(final StringBuilder sb, final int trials) {}
+
   /**
    * Traverses all the unique axis points and performs trials(u) at each point
    * and outputs a row per unique axis point.
@@ -100,13 +121,28 @@ public abstract class BaseUpdateSpeedProfile implements JobProfile {
       final int trials = getNumTrials(nextU);
 
       System.gc(); //much slower but cleaner plots
-      double sumUpdateTimePerU_nS = 0;
-      for (int t = 0; t < trials; t++) {
-        sumUpdateTimePerU_nS += doTrial(nextU);
+      if (preHashed) {
+        final PreHashedTrials preHashedTrials = (PreHashedTrials) this;
+        double sumHashTimePerU_nS = 0;
+        double sumInsertTimePerU_nS = 0;
+        for (int t = 0; t < trials; t++) {
+          sumHashTimePerU_nS += preHashedTrials.doHashTrial(nextU);
+          sumInsertTimePerU_nS += preHashedTrials.doInsertTrial(nextU);
+        }
+        final double meanHashTimePerU_nS = sumHashTimePerU_nS / trials;
+        final double meanInsertTimePerU_nS = sumInsertTimePerU_nS / trials;
+
+        processPreHashed(meanHashTimePerU_nS, meanInsertTimePerU_nS, trials, nextU, dataStr);
+      } else {
+        double sumUpdateTimePerU_nS = 0;
+        for (int t = 0; t < trials; t++) {
+          sumUpdateTimePerU_nS += doTrial(nextU);
+        }
+        final double meanUpdateTimePerU_nS = sumUpdateTimePerU_nS / trials;
+
+        process(meanUpdateTimePerU_nS, trials, nextU, dataStr, numSketches);
+        appendDataColumns(dataStr, trials);
       }
-      final double meanUpdateTimePerU_nS = sumUpdateTimePerU_nS / trials;
-
-      process(meanUpdateTimePerU_nS, trials, nextU, dataStr, numSketches);
 
       job.println(dataStr.toString());
     }
@@ -158,6 +194,26 @@ public abstract class BaseUpdateSpeedProfile implements JobProfile {
     }
   }
 
+  /**
+   * Process the results of the PreHashed mode
+   *
+   * @param meanHashTimePerU_nS mean hash time per key in nanoseconds.
+   * @param meanInsertTimePerU_nS mean insert time per key in nanoseconds.
+   * @param uPerTrial number of uniques per trial
+   * @param sb The StringBuilder object that is reused for each row of output
+   */
+  private static void processPreHashed(final double meanHashTimePerU_nS,
+      final double meanInsertTimePerU_nS, final int trials, final int uPerTrial,
+      final StringBuilder sb) {
+    // OUTPUT
+    sb.setLength(0);
+    sb.append(uPerTrial).append(TAB);
+    sb.append(trials).append(TAB);
+    sb.append(meanHashTimePerU_nS).append(TAB);
+    sb.append(meanInsertTimePerU_nS).append(TAB);
+    sb.append(meanHashTimePerU_nS + meanInsertTimePerU_nS);
+  }
+
   /**
    * Returns a column header row
    * @return a column header row
@@ -166,11 +222,18 @@ public abstract class BaseUpdateSpeedProfile implements JobProfile {
     final StringBuilder sb = new StringBuilder();
     sb.append("InU").append(TAB);
     sb.append("Trials").append(TAB);
+    if (preHashed) {
+      sb.append("nS/Hash").append(TAB);
+      sb.append("nS/Insert").append(TAB);
+      sb.append("nS/Combined");
+      return sb.toString();
+    }
     sb.append("nS/Set");
     if (numSketches > 1) {
       sb.append(TAB);
       sb.append("nS/Sketch");
     }
+    appendHeaderColumns(sb);
     return sb.toString();
   }
 
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.uniquecount;
+
+/**
+ * The trials of the PreHashed mode of a {@link BaseUpdateSpeedProfile}, which times hashing the
+ * keys and inserting the hashes separately. The property PreHashed=true is rejected for profiles
+ * that do not implement this interface.
+ */
+public interface PreHashedTrials {
+
+  /**
+   * Hashes the next uPerTrial keys into the hash buffer of the profile, which is then consumed by
+   * the following call to {@link #doInsertTrial(int)}.
+   * @param uPerTrial the number of unique updates for this trial
+   * @return the average hash time per key for this trial
+   */
+  double doHashTrial(int uPerTrial);
+
+  /**
+   * Resets the sketch and inserts the uPerTrial hashes produced by the previous call to
+   * {@link #doHashTrial(int)} through the lowest-level update entry point of the sketch.
+   * @param uPerTrial the number of unique updates for this trial
+   * @return the average insert time per key for this trial
+   */
+  double doInsertTrial(int uPerTrial);
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.cpc;
+
+/**
+ * Provide access to hidden CPC methods.
+ */
+public class CpcRedirects {
+
+  /**
+   * Gets the seed of the given CpcSketch.
+   * @param sk the sketch
+   * @return the seed
+   */
+  public long getSeed(final CpcSketch sk) {
+    return sk.seed;
+  }
+
+  /**
+   * Updates the sketch with both halves of an already computed 128-bit MurmurHash3,
+   * bypassing the hash function.
+   * @param sk the sketch
+   * @param hash0 the first 64 bits of the hash
+   * @param hash1 the second 64 bits of the hash
+   */
+  public void hashUpdate(final CpcSketch sk, final long hash0, final long hash1) {
+    sk.hashUpdate(hash0, hash1);
+  }
+
+  /**
+   * Gets the name of the current flavor of the given sketch: EMPTY, SPARSE, HYBRID, PINNED or SLIDING.
+   * @param sk the sketch
+   * @return the name of the flavor
+   */
+  public String getFlavorName(final CpcSketch sk) {
+    return sk.getFlavor().name();
+  }
+
+  /**
+   * Gets the number of coupons collected by the given sketch.
+   * @param sk the sketch
+   * @return the number of coupons
+   */
+  public long getNumCoupons(final CpcSketch sk) {
+    return sk.numCoupons;
+  }
+
+  /**
+   * Gets the bytes of the uncompressed, in-memory state of the given sketch: the sliding window
+   * plus the slots of the pair table.
+   * @param sk the sketch
+   * @return the bytes of the sliding window and pair table
+   */
+  public int getUncompressedBytes(final CpcSketch sk) {
+    final int windowBytes = sk.slidingWindow == null ? 0 : sk.slidingWindow.length;
+    final int tableBytes = sk.pairTable == null ? 0 : sk.pairTable.getSlotsArr().length << 2;
+    return windowBytes + tableBytes;
+  }
+
+}
@@ -22,6 +22,8 @@ package org.apache.datasketches.hll;
 import static org.apache.datasketches.hll.HllEstimators.hllCompositeEstimate;
 import static org.apache.datasketches.hll.HllEstimators.hllLowerBound;
 import static org.apache.datasketches.hll.HllEstimators.hllUpperBound;
+import static org.apache.datasketches.hll.HllUtil.KEY_BITS_26;
+import static org.apache.datasketches.hll.HllUtil.KEY_MASK_26;
 import static org.apache.datasketches.hll.RelativeErrorTables.getRelErr;
 
 /**
@@ -56,4 +58,25 @@ public class HllRedirects {
     return (AbstractHllArray)sk.hllSketchImpl;
   }
 
+  /**
+   * Converts a 128-bit MurmurHash3 result into the coupon the sketch would compute for it.
+   * @param hash the 128-bit hash
+   * @return the coupon
+   */
+  public int coupon(final long[] hash) {
+    final int addr26 = (int) (hash[0] & KEY_MASK_26);
+    final int lz = Long.numberOfLeadingZeros(hash[1]);
+    final int value = ((lz > 62) ? 62 : lz) + 1;
+    return (value << KEY_BITS_26) | addr26;
+  }
+
+  /**
+   * Updates the sketch with a coupon, bypassing the hash function.
+   * @param sk the sketch
+   * @param coupon the coupon
+   */
+  public void couponUpdate(final HllSketch sk, final int coupon) {
+    sk.couponUpdate(coupon);
+  }
+
 }
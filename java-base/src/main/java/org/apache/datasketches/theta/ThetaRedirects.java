@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.theta;
+
+/**
+ * Provide access to hidden Theta methods.
+ */
+public class ThetaRedirects {
+
+  /**
+   * Gets the seed of the given UpdateSketch.
+   * @param sk the sketch
+   * @return the seed
+   */
+  public long getSeed(final UpdateSketch sk) {
+    return sk.getSeed();
+  }
+
+  /**
+   * Updates the sketch with an already hashed and shifted key, bypassing the hash function.
+   * The hash must be the first 64 bits of the 128-bit MurmurHash3 shifted right by one.
+   * @param sk the sketch
+   * @param hash the hash
+   * @return the UpdateReturnState
+   */
+  public UpdateReturnState hashUpdate(final UpdateSketch sk, final long hash) {
+    return sk.hashUpdate(hash);
+  }
+
+  /**
+   * Blocks until all background propagations into the given concurrent shared sketch have
+   * completed. The sketch's propagation service is shut down, so the sketch must be reset before
+   * it is updated again.
+   * @param shared a shared sketch built with UpdateSketchBuilder.buildShared()
+   */
+  public void awaitPropagation(final UpdateSketch shared) {
+    ((ConcurrentSharedThetaSketch) shared).awaitBgPropagationTermination();
+  }
+
+  /**
+   * Gets the bytes occupied by the preamble and hash table of the given sketch. Unlike
+   * getCurrentBytes(), this also works for the local buffer of a concurrent sketch, which
+   * reports the bytes of its shared sketch.
+   * @param sk the sketch
+   * @return the bytes of the preamble and hash table
+   */
+  public int getTableBytes(final UpdateSketch sk) {
+    return (sk.getCurrentPreambleLongs() + (1 << sk.getLgArrLongs())) << 3;
+  }
+
+}
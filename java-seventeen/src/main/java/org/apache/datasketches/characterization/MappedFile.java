@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.datasketches.memory.Memory;
+
+/**
+ * A read-only memory-mapped file that can be accessed from multiple threads.
+ */
+public class MappedFile implements AutoCloseable {
+  private final SharedScope scope;
+  private final Memory mem;
+
+  /**
+   * Maps the whole given file read-only into a shared scope.
+   * @param file the file to map
+   * @throws IOException if the file cannot be mapped
+   */
+  public MappedFile(final File file) throws IOException {
+    scope = new SharedScope();
+    try {
+      mem = scope.map(file);
+    } catch (final IOException | RuntimeException e) {
+      scope.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Gets the Memory of the mapped file
+   * @return the Memory of the mapped file
+   */
+  public Memory getMemory() {
+    return mem;
+  }
+
+  /**
+   * Unmaps the file. The Memory must not be used afterwards.
+   */
+  @Override
+  public void close() {
+    scope.close();
+  }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteOrder;
+
+import org.apache.datasketches.memory.DefaultMemoryRequestServer;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.MemoryRequestServer;
+import org.apache.datasketches.memory.WritableMemory;
+
+/**
+ * A shared jdk.incubator.foreign.ResourceScope of memory 4.1.0, whose memories can be accessed from
+ * any thread, unlike the confined scopes memory 4.1.0 creates by default.
+ *
+ * <p>The scope is reached by reflection, so that this build compiles without the incubating module,
+ * which every compile would warn about. Memory 4.1.0 needs the module at run time anyway.</p>
+ */
+final class SharedScope implements AutoCloseable {
+  private static final Class<?> SCOPE_CLASS;
+  private static final Method NEW_SHARED_SCOPE;
+  private static final Method CLOSE;
+  private static final Method MAP;
+  private static final Method ALLOCATE_DIRECT;
+
+  static {
+    try {
+      SCOPE_CLASS = Class.forName("jdk.incubator.foreign.ResourceScope");
+      NEW_SHARED_SCOPE = SCOPE_CLASS.getMethod("newSharedScope");
+      CLOSE = SCOPE_CLASS.getMethod("close");
+      MAP = Memory.class.getMethod("map", File.class, long.class, long.class, SCOPE_CLASS, ByteOrder.class);
+      ALLOCATE_DIRECT = WritableMemory.class.getMethod("allocateDirect", long.class, long.class, SCOPE_CLASS,
+          ByteOrder.class, MemoryRequestServer.class);
+    } catch (final ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final Object scope;
+
+  /**
+   * Creates a new shared scope.
+   */
+  SharedScope() {
+    scope = invoke(NEW_SHARED_SCOPE, null);
+  }
+
+  /**
+   * Maps the whole given file read-only into this scope.
+   * @param file the file to map
+   * @return the Memory of the mapped file
+   * @throws IOException if the file cannot be mapped
+   */
+  Memory map(final File file) throws IOException {
+    try {
+      return (Memory) MAP.invoke(null, file, 0L, file.length(), scope, ByteOrder.nativeOrder());
+    } catch (final InvocationTargetException e) {
+      if (e.getCause() instanceof IOException) { throw (IOException) e.getCause(); }
+      throw unwrap(e);
+    } catch (final IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Allocates the given number of bytes off-heap in this scope, with the defaults of
+   * WritableMemory.allocateDirect(long).
+   * @param bytes the number of bytes
+   * @return the WritableMemory of the allocation
+   */
+  WritableMemory allocateDirect(final long bytes) {
+    return (WritableMemory) invoke(ALLOCATE_DIRECT, null, bytes, 8L, scope, ByteOrder.nativeOrder(),
+        new DefaultMemoryRequestServer());
+  }
+
+  /**
+   * Closes the scope, which frees or unmaps all its memories.
+   */
+  @Override
+  public void close() {
+    invoke(CLOSE, scope);
+  }
+
+  private static Object invoke(final Method method, final Object target, final Object... args) {
+    try {
+      return method.invoke(target, args);
+    } catch (final InvocationTargetException e) {
+      throw unwrap(e);
+    } catch (final IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static RuntimeException unwrap(final InvocationTargetException e) {
+    final Throwable cause = e.getCause();
+    if (cause instanceof RuntimeException) { return (RuntimeException) cause; }
+    if (cause instanceof Error) { throw (Error) cause; }
+    return new IllegalStateException(cause);
+  }
+
+}
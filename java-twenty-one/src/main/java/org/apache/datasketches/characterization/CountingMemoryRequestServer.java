@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization;
+
+import org.apache.datasketches.memory.MemoryRequestServer;
+import org.apache.datasketches.memory.WritableMemory;
+
+/**
+ * A MemoryRequestServer that allocates by a MemoryRequestCounter.Strategy and counts the requests.
+ */
+public class CountingMemoryRequestServer extends MemoryRequestCounter implements MemoryRequestServer {
+
+  /**
+   * Creates a server with the given allocation strategy.
+   * @param strategy the allocation strategy
+   */
+  public CountingMemoryRequestServer(final Strategy strategy) {
+    super(strategy);
+  }
+
+  @Override
+  public WritableMemory request(final WritableMemory currentWritableMemory, final long capacityBytes) {
+    return grow(currentWritableMemory, capacityBytes);
+  }
+
+  @Override
+  public void requestClose(final WritableMemory memToClose) {
+    requestFree(memToClose);
+  }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization;
+
+import java.lang.foreign.Arena;
+
+import org.apache.datasketches.memory.WritableMemory;
+
+/**
+ * Off-heap WritableMemory that can be accessed from multiple threads.
+ */
+public class DirectMemory implements AutoCloseable {
+  private final Arena arena;
+  private final WritableMemory wmem;
+
+  /**
+   * Allocates the given number of bytes off-heap from a shared Arena.
+   * @param bytes the number of bytes
+   */
+  public DirectMemory(final long bytes) {
+    arena = Arena.ofShared();
+    wmem = WritableMemory.allocateDirect(bytes, arena);
+  }
+
+  /**
+   * Gets the WritableMemory of the allocation
+   * @return the WritableMemory of the allocation
+   */
+  public WritableMemory getWritableMemory() {
+    return wmem;
+  }
+
+  /**
+   * Frees the allocation. The WritableMemory must not be used afterwards.
+   */
+  @Override
+  public void close() {
+    arena.close();
+  }
+
+}
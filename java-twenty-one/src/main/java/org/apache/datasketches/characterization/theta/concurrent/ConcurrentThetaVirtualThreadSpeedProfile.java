@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.characterization.theta.concurrent;
+
+import static org.apache.datasketches.thetacommon.ThetaUtil.DEFAULT_UPDATE_SEED;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.datasketches.Job;
+import org.apache.datasketches.JobProfile;
+import org.apache.datasketches.Properties;
+import org.apache.datasketches.theta.ThetaRedirects;
+import org.apache.datasketches.theta.UpdateSketch;
+import org.apache.datasketches.theta.UpdateSketchBuilder;
+
+/**
+ * Request-scoped writers on a concurrent theta sketch. Every trial launches one thread per writer,
+ * virtual or platform per VT_threadType. Each writer builds its own local buffer, updates it with
+ * its share of the trial's uniques and exits.
+ *
+ * <p>For each writer count from VT_minWriters to VT_maxWriters (doubling) a row is output with the
+ * aggregate throughput including the thread launches, the time for the background propagation to
+ * drain after the last writer exits, the relative error of the shared estimate after the drain and
+ * the bytes held by the local buffers.</p>
+ *
+ * <p>The local buffers wait for in-flight propagations by spinning. When there are more spinning
+ * virtual writers than carrier threads, the writer holding up the spinners may never be scheduled.
+ * A trial that does not finish within VT_timeout_mS is reported as stalled and ends the job.</p>
+ *
+ * <p>Requires Java 21.</p>
+ */
+public class ConcurrentThetaVirtualThreadSpeedProfile implements JobProfile {
+  private final ThetaRedirects redirects = new ThetaRedirects();
+  private Job job;
+  private Properties prop;
+  private long vIn = 0;
+  private int sharedLgK;
+  private int localLgK;
+  private boolean ordered;
+  private int poolThreads;
+  private double maxConcurrencyError;
+  private boolean virtual;
+  private int lgT;
+  private int lgU;
+  private int minWriters;
+  private int maxWriters;
+  private long timeout_mS;
+
+  //JobProfile
+  @Override
+  public void start(final Job job) {
+    this.job = job;
+    prop = job.getProperties();
+    sharedLgK = Integer.parseInt(prop.mustGet("LgK"));
+    localLgK = Integer.parseInt(prop.mustGet("CONCURRENT_THETA_localLgK"));
+    ordered = Boolean.parseBoolean(prop.mustGet("CONCURRENT_THETA_ordered"));
+    poolThreads = Integer.parseInt(prop.mustGet("CONCURRENT_THETA_poolThreads"));
+    maxConcurrencyError = Double.parseDouble(prop.mustGet("CONCURRENT_THETA_maxConcurrencyError"));
+    virtual = prop.mustGet("VT_threadType").equalsIgnoreCase("VIRTUAL");
+    lgT = Integer.parseInt(prop.mustGet("Trials_lgT"));
+    lgU = Integer.parseInt(prop.mustGet("VT_lgU"));
+    minWriters = Integer.parseInt(prop.mustGet("VT_minWriters"));
+    maxWriters = Integer.parseInt(prop.mustGet("VT_maxWriters"));
+    timeout_mS = Long.parseLong(prop.mustGet("VT_timeout_mS"));
+    doTrials();
+    shutdown();
+    cleanup();
+  }
+
+  @Override
+  public void shutdown() {}
+
+  @Override
+  public void cleanup() {}
+  //end JobProfile
+
+  private void doTrials() {
+    final int trials = 1 << lgT;
+    final StringBuilder dataStr = new StringBuilder();
+    job.println(getHeader());
+    for (int numWriters = minWriters; numWriters <= maxWriters; numWriters = nextWriters(numWriters)) {
+      final UpdateSketchBuilder bldr = configureBuilder(numWriters);
+      final UpdateSketch sharedSketch = bldr.buildShared();
+      final int uPerWriter = Math.max((1 << lgU) / numWriters, 1);
+      final long totalU = (long) uPerWriter * numWriters;
+      final LongAdder localBytes = new LongAdder();
+      final Thread[] writers = new Thread[numWriters];
+
+      System.gc();
+      long sumIngestTime_nS = 0;
+      long sumDrainTime_nS = 0;
+      double sumRelErr = 0;
+      for (int t = 0; t < trials; t++) {
+        sharedSketch.reset();
+        localBytes.reset();
+        final long base = vIn;
+        vIn += totalU;
+
+        final long startIngestTime_nS = System.nanoTime();
+        for (int w = 0; w < numWriters; w++) {
+          final long start = base + ((long) w * uPerWriter);
+          final Runnable request = () -> {
+            final UpdateSketch local = bldr.buildLocal(sharedSketch);
+            for (long v = start, end = start + uPerWriter; v < end; v++) {
+              local.update(v);
+            }
+            localBytes.add(redirects.getTableBytes(local));
+          };
+          writers[w] = virtual ? Thread.ofVirtual().start(request) : Thread.ofPlatform().daemon().start(request);
+        }
+        if (!joinAll(writers, startIngestTime_nS + (timeout_mS * 1_000_000L))) {
+          job.println(numWriters + "" + TAB + (virtual ? "Virtual" : "Platform") + TAB
+              + "Stalled: writers did not finish within " + timeout_mS + " mS");
+          //shut down the propagation service so its pool thread does not keep the JVM alive
+          final Thread drain = new Thread(() -> redirects.awaitPropagation(sharedSketch));
+          drain.setDaemon(true);
+          drain.start();
+          return;
+        }
+        final long stopIngestTime_nS = System.nanoTime();
+        sumIngestTime_nS += stopIngestTime_nS - startIngestTime_nS;
+
+        redirects.awaitPropagation(sharedSketch);
+        sumDrainTime_nS += System.nanoTime() - stopIngestTime_nS;
+        sumRelErr += (sharedSketch.getEstimate() / totalU) - 1.0;
+      }
+      sharedSketch.reset(); //restarts the propagation service
+
+      final double ingestTimePerU_nS = (double) sumIngestTime_nS / trials / totalU;
+
+      //OUTPUT
+      dataStr.setLength(0);
+      dataStr.append(numWriters).append(TAB);
+      dataStr.append(virtual ? "Virtual" : "Platform").append(TAB);
+      dataStr.append(trials).append(TAB);
+      dataStr.append(totalU).append(TAB);
+      dataStr.append(ingestTimePerU_nS).append(TAB);
+      dataStr.append(1E9 / ingestTimePerU_nS).append(TAB);
+      dataStr.append((double) sumDrainTime_nS / trials / 1E6).append(TAB);
+      dataStr.append(sumRelErr / trials).append(TAB);
+      dataStr.append((double) localBytes.sum() / numWriters).append(TAB);
+      dataStr.append(localBytes.sum()).append(TAB);
+      dataStr.append(sharedSketch.getCurrentBytes());
+      job.println(dataStr.toString());
+    }
+  }
+
+  private static boolean joinAll(final Thread[] writers, final long deadline_nS) {
+    for (int w = 0; w < writers.length; w++) {
+      final long remaining_mS = (deadline_nS - System.nanoTime()) / 1_000_000L;
+      try {
+        if ((remaining_mS <= 0) || !writers[w].join(Duration.ofMillis(remaining_mS))) {
+          return false;
+        }
+      } catch (final InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return true;
+  }
+
+  private int nextWriters(final int numWriters) {
+    if (numWriters >= maxWriters) { return numWriters + 1; }
+    return Math.min(numWriters * 2, maxWriters);
+  }
+
+  //configures builder for both local and shared
+  private UpdateSketchBuilder configureBuilder(final int numWriters) {
+    final UpdateSketchBuilder bldr = new UpdateSketchBuilder();
+    bldr.setNumPoolThreads(poolThreads);
+    bldr.setLogNominalEntries(sharedLgK);
+    bldr.setLocalLogNominalEntries(localLgK);
+    bldr.setSeed(DEFAULT_UPDATE_SEED);
+    bldr.setPropagateOrderedCompact(ordered);
+    bldr.setMaxConcurrencyError(maxConcurrencyError);
+    bldr.setMaxNumLocalThreads(numWriters);
+    return bldr;
+  }
+
+  private static String getHeader() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("Writers").append(TAB);
+    sb.append("ThreadType").append(TAB);
+    sb.append("Trials").append(TAB);
+    sb.append("U").append(TAB);
+    sb.append("Ingest_nS/u").append(TAB);
+    sb.append("Updates/Sec").append(TAB);
+    sb.append("Drain_mS").append(TAB);
+    sb.append("MeanRelErr").append(TAB);
+    sb.append("LocalBytes/Writer").append(TAB);
+    sb.append("LocalBytesTotal").append(TAB);
+    sb.append("SharedBytes");
+    return sb.toString();
+  }
+
+}